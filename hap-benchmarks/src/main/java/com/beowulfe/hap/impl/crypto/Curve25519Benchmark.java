@@ -0,0 +1,49 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import djb.Curve25519;
+
+/**
+ * The Curve25519 operations of pair-verify: generating the accessory's ephemeral key pair and agreeing on the shared
+ * secret with the controller's public key.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class Curve25519Benchmark {
+
+	private byte[] privateKey;
+	private byte[] peerPublicKey;
+	private final byte[] publicKey = new byte[32];
+	private final byte[] sharedSecret = new byte[32];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		privateKey = new byte[32];
+		random.nextBytes(privateKey);
+		byte[] peerPrivateKey = new byte[32];
+		random.nextBytes(peerPrivateKey);
+		peerPublicKey = new byte[32];
+		Curve25519.keygen(peerPublicKey, null, peerPrivateKey);
+	}
+
+	@Benchmark
+	public byte[] keygen() {
+		Curve25519.keygen(publicKey, null, privateKey.clone());
+		return publicKey;
+	}
+
+	@Benchmark
+	public byte[] agreement() {
+		Curve25519.curve(sharedSecret, privateKey, peerPublicKey);
+		return sharedSecret;
+	}
+}
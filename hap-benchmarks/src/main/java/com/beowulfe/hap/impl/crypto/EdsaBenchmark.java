@@ -0,0 +1,60 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Ed25519 signatures as made and checked during pair-setup and pair-verify. The signed material has the length of
+ * the pair-verify M2 material: two Curve25519 public keys around the 17 byte accessory identifier.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EdsaBenchmark {
+
+	private byte[] privateKey;
+	private byte[] material;
+	private byte[] signature;
+	private EdsaSigner signer;
+	private EdsaVerifier verifier;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(1);
+		privateKey = new byte[32];
+		random.nextBytes(privateKey);
+		material = new byte[32 + 17 + 32];
+		random.nextBytes(material);
+		signer = new EdsaSigner(privateKey);
+		verifier = new EdsaVerifier(signer.getPublicKey());
+		signature = signer.sign(material);
+		if (!verifier.verify(material, signature)) {
+			throw new IllegalStateException("Signature does not verify");
+		}
+	}
+
+	@Benchmark
+	public EdsaSigner createSigner() {
+		return new EdsaSigner(privateKey);
+	}
+
+	@Benchmark
+	public byte[] sign() throws Exception {
+		return signer.sign(material);
+	}
+
+	@Benchmark
+	public EdsaVerifier createVerifier() {
+		return new EdsaVerifier(signer.getPublicKey());
+	}
+
+	@Benchmark
+	public boolean verify() throws Exception {
+		return verifier.verify(material, signature);
+	}
+}
@@ -0,0 +1,62 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Latency distribution of sealing one EVENT/1.0 notification for every subscribed connection, with and without a
+ * precomputed keystream window. The window is refilled between events, as the encoder does while the event loop is
+ * idle. Run in sample mode to read the p99 from the percentiles JMH reports.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventFanOutBenchmark {
+
+	private static final byte[] EVENT = ("EVENT/1.0 200 OK\r\nContent-Type: application/hap+json\r\nContent-Length: 58\r\n\r\n"
+			+ "{\"characteristics\":[{\"aid\":2,\"iid\":10,\"value\":21.5}]}").getBytes(StandardCharsets.UTF_8);
+
+	@Param({"1", "32"})
+	private int subscribers;
+
+	@Param({"0", "8"})
+	private int precomputeFrames;
+
+	private SessionCipher[] ciphers;
+	private byte[] aad;
+	private byte[] out;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		ciphers = new SessionCipher[subscribers];
+		for (int i=0; i<subscribers; i++) {
+			byte[] key = new byte[32];
+			random.nextBytes(key);
+			ciphers[i] = new SessionCipher(AeadBackends.get(), key, precomputeFrames);
+		}
+		aad = new byte[] { (byte) EVENT.length, (byte) (EVENT.length >>> 8) };
+		out = new byte[EVENT.length + SessionCipher.TAG_LENGTH];
+	}
+
+	@Setup(Level.Invocation)
+	public void idle() {
+		for (SessionCipher cipher: ciphers) {
+			cipher.precompute();
+		}
+	}
+
+	@Benchmark
+	public byte[] sealEvent() throws Exception {
+		for (SessionCipher cipher: ciphers) {
+			cipher.seal(aad, 0, aad.length, EVENT, 0, EVENT.length, out, 0);
+		}
+		return out;
+	}
+}
@@ -0,0 +1,100 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.util.Pack;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares sealing and opening session frames through a reused {@link SessionCipher} with the previous approach of
+ * building a new {@link ChachaEncoder} or {@link ChachaDecoder} for every frame, on each {@link AeadBackend}. Every
+ * parameter combination runs in its own fork, so the backend is forced through {@link AeadBackends#BACKEND_PROPERTY}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionCipherBenchmark {
+
+	private static final int FRAMES = 1024;
+
+	@Param({"64", "1024"})
+	private int frameLength;
+
+	@Param({"bouncycastle", "jca"})
+	private String backend;
+
+	private byte[] key;
+	private byte[] aad;
+	private byte[] plaintext;
+	private byte[][] sealed;
+	private byte[][] ciphertexts;
+	private byte[][] macs;
+	private byte[] out;
+	private int frame;
+	private SessionCipher sealer;
+	private SessionCipher opener;
+
+	@Setup
+	public void setup() throws Exception {
+		System.setProperty(AeadBackends.BACKEND_PROPERTY, backend);
+		if (!AeadBackends.get().getName().equals(backend)) {
+			throw new IllegalStateException("AEAD backend "+backend+" is not usable on this JVM");
+		}
+		Random random = new Random(1);
+		key = new byte[32];
+		random.nextBytes(key);
+		plaintext = new byte[frameLength];
+		random.nextBytes(plaintext);
+		aad = new byte[] { (byte) frameLength, (byte) (frameLength >>> 8) };
+
+		sealed = new byte[FRAMES][];
+		ciphertexts = new byte[FRAMES][frameLength];
+		macs = new byte[FRAMES][16];
+		for (int i=0; i<FRAMES; i++) {
+			sealed[i] = new ChachaEncoder(key, Pack.longToLittleEndian(i)).encodeCiphertext(plaintext, aad);
+			System.arraycopy(sealed[i], 0, ciphertexts[i], 0, frameLength);
+			System.arraycopy(sealed[i], frameLength, macs[i], 0, 16);
+		}
+		out = new byte[frameLength + 16];
+		sealer = new SessionCipher(key);
+		opener = new SessionCipher(key);
+	}
+
+	@Benchmark
+	public byte[] sealPerFrameEncoder() throws Exception {
+		return new ChachaEncoder(key, Pack.longToLittleEndian(nextFrame())).encodeCiphertext(plaintext, aad);
+	}
+
+	@Benchmark
+	public byte[] sealSessionCipher() throws Exception {
+		sealer.seal(aad, 0, aad.length, plaintext, 0, plaintext.length, out, 0);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] openPerFrameDecoder() throws Exception {
+		int i = nextFrame();
+		return new ChachaDecoder(key, Pack.longToLittleEndian(i)).decodeCiphertext(macs[i], aad, ciphertexts[i]);
+	}
+
+	@Benchmark
+	public byte[] openSessionCipher() throws Exception {
+		int i = nextFrame();
+		if (i == 0) {
+			// The pre-sealed frames are replayed, so the nonce counter has to start over with them
+			opener = new SessionCipher(key);
+		}
+		opener.open(aad, 0, aad.length, sealed[i], 0, sealed[i].length, out, 0);
+		return out;
+	}
+
+	private int nextFrame() {
+		int i = frame;
+		frame = (frame + 1) % FRAMES;
+		return i;
+	}
+}
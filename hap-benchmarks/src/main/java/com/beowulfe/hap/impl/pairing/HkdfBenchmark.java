@@ -0,0 +1,61 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * HKDF-SHA-512 derivations of a 32 byte key, as done for every pairing message key. The session keys at the end of
+ * pair-verify share salt and secret, so they are derived either with two complete derivations or with a single
+ * extract step followed by two expands.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HkdfBenchmark {
+
+	private static final byte[] SALT = "Control-Salt".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] WRITE_INFO = "Control-Write-Encryption-Key".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] READ_INFO = "Control-Read-Encryption-Key".getBytes(StandardCharsets.UTF_8);
+
+	private byte[] sharedSecret;
+
+	@Setup
+	public void setup() {
+		sharedSecret = new byte[32];
+		new Random(1).nextBytes(sharedSecret);
+	}
+
+	@Benchmark
+	public byte[] deriveKey() {
+		return hkdf(sharedSecret, SALT, WRITE_INFO);
+	}
+
+	@Benchmark
+	public byte[][] sessionKeysSeparate() {
+		return new byte[][] { hkdf(sharedSecret, SALT, WRITE_INFO), hkdf(sharedSecret, SALT, READ_INFO) };
+	}
+
+	@Benchmark
+	public byte[][] sessionKeysSharedExtract() {
+		byte[] prk = PairVerificationManager.extract(SALT, sharedSecret);
+		return new byte[][] { PairVerificationManager.expand(prk, "Control-Write-Encryption-Key", 32),
+				PairVerificationManager.expand(prk, "Control-Read-Encryption-Key", 32) };
+	}
+
+	private static byte[] hkdf(byte[] secret, byte[] salt, byte[] info) {
+		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA512Digest());
+		hkdf.init(new HKDFParameters(secret, salt, info));
+		byte[] key = new byte[32];
+		hkdf.generateBytes(key, 0, 32);
+		return key;
+	}
+}
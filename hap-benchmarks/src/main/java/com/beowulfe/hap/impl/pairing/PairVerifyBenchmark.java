@@ -0,0 +1,192 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.openjdk.jmh.annotations.*;
+
+import com.beowulfe.hap.HomekitAuthInfo;
+import com.beowulfe.hap.impl.HomekitRegistry;
+import com.beowulfe.hap.impl.crypto.ChachaEncoder;
+import com.beowulfe.hap.impl.crypto.EdsaSigner;
+import com.beowulfe.hap.impl.http.HttpMethod;
+import com.beowulfe.hap.impl.http.HttpRequest;
+import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
+
+import djb.Curve25519;
+
+/**
+ * Accessory side cost of a complete pair-verify as seen by a reconnecting controller. With cached keys, a single
+ * {@link PairingKeyCache} is shared by every verify, as it is by the connections of a HomekitRoot. Without, every
+ * verify gets a fresh cache with no ephemeral key pool, which matches the previous per-connection behaviour. The
+ * controller's half of the exchange is included in both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PairVerifyBenchmark {
+
+	private static final String MAC = "AA:BB:CC:DD:EE:FF";
+	private static final byte[] CONTROLLER = "controller".getBytes(StandardCharsets.UTF_8);
+
+	@Param({"true", "false"})
+	private boolean cached;
+
+	private final SecureRandom random = new SecureRandom();
+	private HomekitAuthInfo authInfo;
+	private HomekitRegistry registry;
+	private EdsaSigner controllerSigner;
+	private PairingKeyCache keys;
+
+	@Setup
+	public void setup() throws Exception {
+		byte[] accessoryKey = new byte[32];
+		byte[] controllerKey = new byte[32];
+		random.nextBytes(accessoryKey);
+		random.nextBytes(controllerKey);
+		controllerSigner = new EdsaSigner(controllerKey);
+		authInfo = new StaticAuthInfo(accessoryKey, controllerSigner.getPublicKey());
+		registry = new HomekitRegistry("Benchmark");
+		keys = new PairingKeyCache(authInfo);
+		if (!Arrays.equals(new PairingKeyCache(authInfo, 0).getSigner().getPublicKey(),
+				new EdsaSigner(accessoryKey).getPublicKey())) {
+			throw new IllegalStateException("Cached identity does not match the accessory key");
+		}
+		pairVerify();
+	}
+
+	@Benchmark
+	public HttpResponse pairVerify() throws Exception {
+		PairVerificationManager manager = new PairVerificationManager(authInfo, registry,
+				cached ? keys : new PairingKeyCache(authInfo, 0));
+
+		byte[] privateKey = new byte[32];
+		byte[] publicKey = new byte[32];
+		random.nextBytes(privateKey);
+		Curve25519.keygen(publicKey, null, privateKey);
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 1);
+		encoder.add(MessageType.PUBLIC_KEY, publicKey);
+		DecodeResult stage1 = TypeLengthValueUtils.decode(bytes(manager.handle(new PairingRequest(encoder.toByteArray()))));
+
+		byte[] accessoryPublicKey = stage1.getBytes(MessageType.PUBLIC_KEY);
+		byte[] sharedSecret = new byte[32];
+		Curve25519.curve(sharedSecret, privateKey, accessoryPublicKey);
+		encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.USERNAME, CONTROLLER);
+		encoder.add(MessageType.SIGNATURE, controllerSigner.sign(ByteUtils.joinBytes(publicKey, CONTROLLER, accessoryPublicKey)));
+		byte[] encrypted = new ChachaEncoder(hkdf(sharedSecret, "Pair-Verify-Encrypt-Salt", "Pair-Verify-Encrypt-Info"),
+				"PV-Msg03".getBytes(StandardCharsets.UTF_8)).encodeCiphertext(encoder.toByteArray());
+		encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 3);
+		encoder.add(MessageType.ENCRYPTED_DATA, encrypted);
+		HttpResponse response = manager.handle(new PairingRequest(encoder.toByteArray()));
+
+		// The accessory reads with the controller's write key
+		if (!(response instanceof UpgradeResponse) || !Arrays.equals(((UpgradeResponse) response).getReadKey().array(),
+				hkdf(sharedSecret, "Control-Salt", "Control-Write-Encryption-Key"))) {
+			throw new IllegalStateException("Pair verify did not produce the expected session keys");
+		}
+		return response;
+	}
+
+	private static byte[] bytes(HttpResponse response) {
+		ByteBuffer body = response.getBody();
+		byte[] bytes = new byte[body.remaining()];
+		body.get(bytes);
+		return bytes;
+	}
+
+	private static byte[] hkdf(byte[] secret, String salt, String info) {
+		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA512Digest());
+		hkdf.init(new HKDFParameters(secret, salt.getBytes(StandardCharsets.UTF_8), info.getBytes(StandardCharsets.UTF_8)));
+		byte[] key = new byte[32];
+		hkdf.generateBytes(key, 0, 32);
+		return key;
+	}
+
+	private static class PairingRequest implements HttpRequest {
+
+		private final byte[] body;
+
+		PairingRequest(byte[] body) {
+			this.body = body;
+		}
+
+		@Override
+		public String getUri() {
+			return "/pair-verify";
+		}
+
+		@Override
+		public byte[] getBody() {
+			return body;
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return HttpMethod.POST;
+		}
+	}
+
+	private static class StaticAuthInfo implements HomekitAuthInfo {
+
+		private final byte[] privateKey;
+		private final byte[] controllerPublicKey;
+
+		StaticAuthInfo(byte[] privateKey, byte[] controllerPublicKey) {
+			this.privateKey = privateKey;
+			this.controllerPublicKey = controllerPublicKey;
+		}
+
+		@Override
+		public String getPin() {
+			return "031-45-154";
+		}
+
+		@Override
+		public String getMac() {
+			return MAC;
+		}
+
+		@Override
+		public BigInteger getSalt() {
+			return BigInteger.ONE;
+		}
+
+		@Override
+		public byte[] getPrivateKey() {
+			return privateKey;
+		}
+
+		@Override
+		public void createUser(String username, byte[] publicKey) {
+		}
+
+		@Override
+		public void removeUser(String username) {
+		}
+
+		@Override
+		public byte[] getUserPublicKey(String username) {
+			return username.equals(MAC+new String(CONTROLLER, StandardCharsets.UTF_8)) ? controllerPublicKey : null;
+		}
+
+		@Override
+		public boolean hasUser() {
+			return true;
+		}
+	}
+}
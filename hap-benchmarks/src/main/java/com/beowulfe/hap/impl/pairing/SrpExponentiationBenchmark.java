@@ -0,0 +1,44 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * g^b mod N for a fresh 3072 bit server private value, through {@link BigInteger#modPow(BigInteger, BigInteger)} and
+ * through the {@link FixedBaseModPow} comb table. Building the table is excluded, as it happens once per JVM.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SrpExponentiationBenchmark {
+
+	private final SecureRandom random = new SecureRandom();
+	private FixedBaseModPow powers;
+	private BigInteger b;
+
+	@Setup
+	public void setup() {
+		powers = new FixedBaseModPow(SrpHandler.G, SrpHandler.N_3072, SrpHandler.N_3072.bitLength());
+	}
+
+	@Setup(Level.Invocation)
+	public void nextPrivateValue() {
+		b = HomekitSRP6Routines.generatePrivateValue(SrpHandler.N_3072, random);
+	}
+
+	@Benchmark
+	public BigInteger modPow() {
+		return SrpHandler.G.modPow(b, SrpHandler.N_3072);
+	}
+
+	@Benchmark
+	public BigInteger fixedBase() {
+		return powers.pow(b);
+	}
+}
@@ -0,0 +1,90 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
+import com.nimbusds.srp6.*;
+
+/**
+ * Accessory side of the two SRP steps of pair-setup, M1 to M2 and M3 to M4. With cached keys a single
+ * {@link PairingKeyCache} with its pool of server values is shared by every setup; without, every setup derives the
+ * verifier and its server value on the spot. The controller's half of M3 is prepared outside of the measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SrpHandlerBenchmark {
+
+	private static final String PIN = "031-45-154";
+	private static final byte[] M1;
+
+	static {
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 1);
+		M1 = encoder.toByteArray();
+	}
+
+	@Param({"true", "false"})
+	private boolean cached;
+
+	// A salt of a whole number of bytes gets a sign byte from the nimbus verifier generator but not from its client
+	private final BigInteger salt = new BigInteger(126, new Random(1)).setBit(126);
+	private PairingKeyCache keys;
+	private SrpHandler handler;
+	private byte[] m3;
+
+	@Setup
+	public void setup() {
+		keys = new PairingKeyCache(null);
+	}
+
+	@Setup(Level.Invocation)
+	public void nextSetup() throws Exception {
+		handler = new SrpHandler(PIN, salt, keys());
+		DecodeResult m2 = TypeLengthValueUtils.decode(bytes(handler.handle(PairSetupRequest.of(M1))));
+
+		SRP6ClientSession client = new SRP6ClientSession();
+		client.setXRoutine(new XRoutineWithUserIdentity());
+		client.setClientEvidenceRoutine(new ClientEvidenceRoutineImpl());
+		client.setServerEvidenceRoutine(new ServerEvidenceRoutineImpl());
+		client.step1("Pair-Setup", PIN);
+		SRP6ClientCredentials credentials = client.step2(new SRP6CryptoParams(SrpHandler.N_3072, SrpHandler.G, "SHA-512"),
+				m2.getBigInt(MessageType.SALT), m2.getBigInt(MessageType.PUBLIC_KEY));
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 3);
+		encoder.add(MessageType.PUBLIC_KEY, credentials.A);
+		encoder.add(MessageType.PROOF, credentials.M1);
+		m3 = encoder.toByteArray();
+	}
+
+	@Benchmark
+	public HttpResponse step1() throws Exception {
+		return new SrpHandler(PIN, salt, keys()).handle(PairSetupRequest.of(M1));
+	}
+
+	@Benchmark
+	public HttpResponse step2() throws Exception {
+		return handler.handle(PairSetupRequest.of(m3));
+	}
+
+	private PairingKeyCache keys() {
+		return cached ? keys : new PairingKeyCache(null, 0, 0);
+	}
+
+	private static byte[] bytes(HttpResponse response) {
+		ByteBuffer body = response.getBody();
+		byte[] bytes = new byte[body.remaining()];
+		body.get(bytes);
+		return bytes;
+	}
+}
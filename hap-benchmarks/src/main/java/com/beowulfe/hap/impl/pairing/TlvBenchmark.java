@@ -0,0 +1,73 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * TLV8 encoding and decoding of the largest pairing message, the pair-setup M2 with its 16 byte salt and 384 byte SRP
+ * public key, which is split into two fragments. Compares {@link TypeLengthValueUtils} with {@link Tlv8Writer} and
+ * {@link Tlv8Reader}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TlvBenchmark {
+
+	private BigInteger salt;
+	private BigInteger publicKey;
+	private byte[] encoded;
+
+	@Setup
+	public void setup() throws Exception {
+		Random random = new Random(1);
+		salt = new BigInteger(128, random);
+		publicKey = new BigInteger(3072, random);
+		encoded = encodeUtils();
+	}
+
+	@Benchmark
+	public byte[] encodeUtils() throws Exception {
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 0x02);
+		encoder.add(MessageType.SALT, salt);
+		encoder.add(MessageType.PUBLIC_KEY, publicKey);
+		return encoder.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] encodeWriter() {
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(1) + Tlv8Writer.length(salt)
+				+ Tlv8Writer.length(publicKey));
+		writer.add(MessageType.STATE, 0x02);
+		writer.add(MessageType.SALT, salt);
+		writer.add(MessageType.PUBLIC_KEY, publicKey);
+		return writer.toByteArray();
+	}
+
+	@Benchmark
+	public BigInteger decodeUtils() throws Exception {
+		DecodeResult d = TypeLengthValueUtils.decode(encoded);
+		return d.getBigInt(MessageType.PUBLIC_KEY);
+	}
+
+	@Benchmark
+	public BigInteger decodeReader() throws Exception {
+		return Tlv8Reader.of(encoded).getBigInt(MessageType.PUBLIC_KEY);
+	}
+
+	@Benchmark
+	public ByteBuf viewReader() throws Exception {
+		return Tlv8Reader.of(encoded).get(MessageType.PUBLIC_KEY);
+	}
+}
@@ -6,7 +6,8 @@ import com.beowulfe.hap.characteristics.EventableCharacteristic;
  * A callback interface for notifying subscribers that a characteristic value has changed. 
  * 
  * {@link EventableCharacteristic}s can be subscribed to, and in doing so, are supplied an instance of this class. Implementors
- * should call the {@link #changed()} method on the passed object when a subscribed characteristic changes.
+ * should call the {@link #changed()} or {@link #changed(Object)} method on the passed object when a subscribed characteristic
+ * changes.
  *
  * @author Andy Lintner
  */
@@ -17,4 +18,17 @@ public interface HomekitCharacteristicChangeCallback {
 	 * Call when the value of the characteristic that was subscribed to when this object was passed changes.
 	 */
 	void changed();
+	
+	/**
+	 * Call instead of {@link #changed()} when the new value is at hand, such as when it arrived in the message that reported the
+	 * change. Subscribers are then told the value without it being read back from the accessory, and the call returns without
+	 * waiting for the event to be sent. The value is of the type the accessory's getter for the characteristic completes with,
+	 * for example a Double for a temperature or a Boolean for a power state. Values the characteristic cannot take are read back
+	 * as with {@link #changed()}.
+	 * 
+	 * @param value the new value of the characteristic.
+	 */
+	default void changed(Object value) {
+		changed();
+	}
 }
@@ -0,0 +1,34 @@
+package com.beowulfe.hap;
+
+import java.io.IOException;
+
+/**
+ * Persistent storage for the configuration index, which is advertised as c# and tells paired controllers to download
+ * the accessory database again when it changes. The index is advanced automatically whenever a fingerprint of the
+ * database (accessory and instance ids, types, permissions, formats and ranges, but not values) changes, and the
+ * fingerprint is stored with it so that restarting the server with the same accessories keeps the same index.
+ * 
+ * Implement this interface to keep the index across restarts, and pass it to
+ * {@link HomekitRoot#setConfigurationStore(HomekitConfigurationStore)}. By default it is only kept in memory.
+ */
+public interface HomekitConfigurationStore {
+
+	/**
+	 * @return the stored configuration index, or 0 if nothing has been stored yet.
+	 */
+	int getConfigurationIndex();
+
+	/**
+	 * @return the fingerprint stored with the configuration index, or null if nothing has been stored yet.
+	 */
+	String getFingerprint();
+
+	/**
+	 * Stores a new configuration index together with the fingerprint of the database it describes.
+	 * 
+	 * @param configurationIndex the configuration index, from 1 to 65535.
+	 * @param fingerprint an opaque string identifying the database.
+	 * @throws IOException if the values cannot be stored.
+	 */
+	void store(int configurationIndex, String fingerprint) throws IOException;
+}
@@ -0,0 +1,34 @@
+package com.beowulfe.hap;
+
+import com.beowulfe.hap.characteristics.Characteristic;
+
+/**
+ * Decides which changes of each characteristic are published to subscribed controllers, for accessories that report
+ * changes far more often than controllers need to hear about them, such as power meters. A change is held back until
+ * the minimum interval since the last event has passed, and then published with the latest value, unless that value
+ * is within the deadband of the one last published. Set it with {@link HomekitRoot#setEventPolicy(HomekitEventPolicy)}.
+ */
+public interface HomekitEventPolicy {
+
+	/**
+	 * @param accessory the accessory the characteristic belongs to.
+	 * @param characteristic the characteristic that changes.
+	 * @return milliseconds between two events, 0 for no limit, or a negative number to publish every change.
+	 */
+	long getMinimumInterval(HomekitAccessory accessory, Characteristic characteristic);
+
+	/**
+	 * @param accessory the accessory the characteristic belongs to.
+	 * @param characteristic the characteristic that changes.
+	 * @return smallest difference from the last published value that is published. Values below the minStep of the
+	 * 	characteristic are raised to it, so 0 suppresses only changes to the same value.
+	 */
+	double getDeadband(HomekitAccessory accessory, Characteristic characteristic);
+
+	/**
+	 * @param accessory the accessory the characteristic belongs to.
+	 * @param characteristic the characteristic that changes.
+	 * @return smallest difference from the last published value that is published, as a fraction of that value.
+	 */
+	double getRelativeDeadband(HomekitAccessory accessory, Characteristic characteristic);
+}
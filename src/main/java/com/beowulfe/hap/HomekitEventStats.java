@@ -0,0 +1,34 @@
+package com.beowulfe.hap;
+
+/**
+ * Counts what happened to events that could not be written to a connection straight away because its outbound buffer
+ * was above the high watermark. Such events wait in a queue per connection that keeps only the latest value of each
+ * characteristic, and holds at most {@link #QUEUE_PROPERTY} characteristics.
+ */
+public interface HomekitEventStats {
+
+	/**
+	 * System property with the number of characteristics a connection queues, by default 256.
+	 */
+	String QUEUE_PROPERTY = "com.beowulfe.hap.eventQueue";
+
+	/**
+	 * @return the number of characteristics a connection queues before it drops the oldest.
+	 */
+	int getQueueLimit();
+
+	/**
+	 * @return the number of characteristic values that were queued.
+	 */
+	long getQueuedCount();
+
+	/**
+	 * @return the number of queued values replaced by a later value of the same characteristic.
+	 */
+	long getConflatedCount();
+
+	/**
+	 * @return the number of queued values dropped because the queue was full.
+	 */
+	long getDroppedCount();
+}
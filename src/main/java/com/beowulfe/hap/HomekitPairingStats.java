@@ -0,0 +1,55 @@
+package com.beowulfe.hap;
+
+/**
+ * Queue metrics of the threads running pair-setup and pair-verify. These run on a bounded pool of their own, so a
+ * burst of handshakes does not delay requests to accessories; a request that does not fit in the queue is answered
+ * with a busy error and retried by the controller. The metrics show whether the pool should be sized differently with
+ * {@link #THREADS_PROPERTY} and {@link #QUEUE_PROPERTY}.
+ */
+public interface HomekitPairingStats {
+
+	/**
+	 * System property with the number of threads running pairing requests, by default half the available processors.
+	 */
+	String THREADS_PROPERTY = "com.beowulfe.hap.pairingThreads";
+
+	/**
+	 * System property with the number of pairing requests that can wait for a thread, by default 16.
+	 */
+	String QUEUE_PROPERTY = "com.beowulfe.hap.pairingQueue";
+
+	/**
+	 * @return the number of requests waiting for a thread.
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return the number of requests that can wait for a thread before new ones are rejected.
+	 */
+	int getQueueLimit();
+
+	/**
+	 * @return the number of requests being handled.
+	 */
+	int getActiveCount();
+
+	/**
+	 * @return the number of requests handled.
+	 */
+	long getCompletedCount();
+
+	/**
+	 * @return the number of requests rejected because the queue was full.
+	 */
+	long getRejectedCount();
+
+	/**
+	 * @return the average time completed requests waited in the queue, in milliseconds.
+	 */
+	double getAverageWaitMillis();
+
+	/**
+	 * @return the longest time a request waited in the queue, in milliseconds.
+	 */
+	double getMaxWaitMillis();
+}
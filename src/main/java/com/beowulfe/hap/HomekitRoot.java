@@ -1,10 +1,13 @@
 package com.beowulfe.hap;
 
+import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.characteristics.EventableCharacteristic;
 import com.beowulfe.hap.impl.HomekitRegistry;
 import com.beowulfe.hap.impl.HomekitWebHandler;
 import com.beowulfe.hap.impl.accessories.Bridge;
 import com.beowulfe.hap.impl.connections.HomekitClientConnectionFactoryImpl;
 import com.beowulfe.hap.impl.connections.SubscriptionManager;
+import com.beowulfe.hap.impl.pairing.PairingKeyCache;
 import com.beowulfe.hap.impl.pairing.PairingListener;
 import com.beowulfe.hap.impl.HomekitAdvertiser;
 import org.slf4j.Logger;
@@ -12,6 +15,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Map;
 
 /**
  * Provides advertising and handling for Homekit accessories. This class handles the advertising of Homekit accessories and 
@@ -31,8 +35,8 @@ public class HomekitRoot {
 	private final String label;
 	private final HomekitRegistry registry;
 	private final SubscriptionManager subscriptions = new SubscriptionManager();
-	private boolean started = false;
-	private int configurationIndex = 1;
+	private final PairingKeyCache keys;
+	private volatile boolean started = false;
 
 	HomekitRoot(String label, HomekitWebHandler webHandler, HomekitAuthInfo authInfo, HomekitAdvertiser.MdnsRegistry mdnsRegistry) throws IOException {
 		this.advertiser = new HomekitAdvertiser(mdnsRegistry);
@@ -40,11 +44,12 @@ public class HomekitRoot {
 		this.authInfo = authInfo;
 		this.label = label;
 		this.registry = new HomekitRegistry(label);
+		this.keys = new PairingKeyCache(authInfo);
 	}
 	
 	/**
-	 * Add an accessory to be handled and advertised by this root. Any existing Homekit connections will be terminated to allow
-	 * the clients to reconnect and see the updated accessory list. When using this for a bridge, the ID of the accessory must be
+	 * Add an accessory to be handled and advertised by this root. Existing Homekit connections are kept; the configuration index
+	 * is advanced so that the clients fetch the updated accessory list. When using this for a bridge, the ID of the accessory must be
 	 * greater than 1, as that ID is reserved for the Bridge itself.
 	 * 
 	 * @param accessory to advertise and handle.
@@ -61,53 +66,96 @@ public class HomekitRoot {
 	 * 
 	 * @param accessory to advertise and handle.
 	 */
-	void addAccessorySkipRangeCheck(HomekitAccessory accessory) {
+	synchronized void addAccessorySkipRangeCheck(HomekitAccessory accessory) {
+		Map<Integer, Characteristic> replaced = registry.getCharacteristics(accessory.getId());
 		this.registry.add(accessory);
 		logger.info("Added accessory " + accessory.getLabel());
 		if (started) {
-			registry.reset();
-			webHandler.resetConnections();
+			updateRegistry(accessory.getId(), replaced);
 		}
 	}
 	
 	/**
-	 * Removes an accessory from being handled or advertised by this root. Any existing Homekit connections will be terminated to allow
-	 * the clients to reconnect and see the updated accessory list.
+	 * Removes an accessory from being handled or advertised by this root. Existing Homekit connections are kept, without any
+	 * subscriptions to the removed accessory; the configuration index is advanced so that the clients fetch the updated accessory list.
 	 * 
 	 * @param accessory accessory to cease advertising and handling
 	 */
-	public void removeAccessory(HomekitAccessory accessory) {
+	public synchronized void removeAccessory(HomekitAccessory accessory) {
+		Map<Integer, Characteristic> removed = registry.getCharacteristics(accessory.getId());
 		this.registry.remove(accessory);
 		logger.info("Removed accessory " + accessory.getLabel());
 		if (started) {
-			registry.reset();
-			webHandler.resetConnections();
+			updateRegistry(accessory.getId(), removed);
 		}
 	}
 	
 	/**
-	 * Starts advertising and handling the previously added Homekit accessories. You should try to call this after you have used the 
-	 * {@link #addAccessory(HomekitAccessory)} method to add all the initial accessories you plan on advertising, as any later additions
-	 * will cause the Homekit clients to reconnect.
+	 * Starts advertising and handling the previously added Homekit accessories. Accessories can still be added and removed
+	 * afterwards; connected Homekit clients stay connected and are told to fetch the updated accessory list.
 	 */
 	public void start() {
-		started = true;
-		registry.reset();
+		synchronized (this) {
+			started = true;
+			resetRegistry();
+		}
 		webHandler.start(new HomekitClientConnectionFactoryImpl(
 				authInfo,
 				registry,
 				subscriptions,
-				new PairingListener() { public void onPairingChanged() throws IOException { HomekitRoot.this.refreshAuthInfo(); } }
+				new PairingListener() { public void onPairingChanged() throws IOException { HomekitRoot.this.refreshAuthInfo(); } },
+				keys
 		)).thenAccept(port -> {
 					try {
 						refreshAuthInfo();
-						advertiser.advertise(label, authInfo.getMac(), port, configurationIndex);
+						advertiser.advertise(label, authInfo.getMac(), port);
 					} catch (Exception e) {
 						throw new RuntimeException(e);
 					}
 		});
 	}
 	
+	/**
+	 * Rebuilds the registry, and advances the configuration index if that changed the attribute database.
+	 */
+	private void resetRegistry() {
+		registry.reset();
+		updateConfigurationIndex();
+	}
+	
+	/**
+	 * Publishes an accessory added or removed while running. Other accessories keep their attribute database, so the
+	 * connections can stay open. Subscriptions to the accessory's characteristics move to the ones that replace them,
+	 * or are dropped if there are none.
+	 * 
+	 * Called with the root's lock held, so that the characteristics before the change and the update that replaces
+	 * them are not interleaved with another addition or removal.
+	 * 
+	 * @param previous the characteristics with the accessory's id before the change.
+	 */
+	private void updateRegistry(int aid, Map<Integer, Characteristic> previous) {
+		registry.update();
+		Map<Integer, Characteristic> current = registry.getCharacteristics(aid);
+		if (current != previous) {
+			for (Map.Entry<Integer, Characteristic> characteristic: previous.entrySet()) {
+				if (characteristic.getValue() instanceof EventableCharacteristic) {
+					Characteristic replacement = current.get(characteristic.getKey());
+					subscriptions.replaceCharacteristic(aid, characteristic.getKey(),
+							replacement instanceof EventableCharacteristic ? (EventableCharacteristic) replacement : null);
+				}
+			}
+		}
+		updateConfigurationIndex();
+	}
+	
+	private void updateConfigurationIndex() {
+		try {
+			advertiser.setFingerprint(registry.getFingerprint());
+		} catch (IOException e) {
+			logger.error("Could not update the configuration index", e);
+		}
+	}
+	
 	/**
 	 * Stops advertising and handling the Homekit accessories.
 	 */
@@ -138,11 +186,42 @@ public class HomekitRoot {
 	
 	
 	/**
-	 * By default, the bridge advertises itself at revision 1. If you make changes to the accessories you're
-	 * including in the bridge after your first call to {@link start()}, you should increment this number. The 
-	 * behavior of the client if the configuration index were to decrement is undefined, so this implementation will
-	 * not manage the configuration index by automatically incrementing - preserving this state across invocations should
-	 * be handled externally.
+	 * Caches the values of characteristics, as decided by the policy, so that reads from several controllers in
+	 * quick succession do not each go to the accessory. Call this before {@link #start()}, or the policy only applies
+	 * once accessories are next added or removed.
+	 * 
+	 * @param policy the policy deciding how long values of each characteristic are cached.
+	 */
+	public void setValueCachePolicy(HomekitValueCachePolicy policy) {
+		registry.setValueCachePolicy(policy);
+	}
+	
+	/**
+	 * Filters the events published for changes of characteristics, as decided by the policy, so that accessories
+	 * reporting changes many times a second do not flood controllers. Call this before {@link #start()}, or the policy
+	 * only applies once accessories are next added or removed.
+	 * 
+	 * @param policy the policy deciding the minimum interval and deadband of events for each characteristic.
+	 */
+	public void setEventPolicy(HomekitEventPolicy policy) {
+		registry.setEventPolicy(policy);
+	}
+	
+	/**
+	 * Sets where the configuration index is kept. The index is advanced automatically whenever the accessories,
+	 * services or characteristics change in a way controllers need to know about, and is only kept in memory unless a
+	 * persistent store is set here. Call this before {@link #start()}.
+	 * 
+	 * @param store the store to keep the configuration index in.
+	 */
+	public void setConfigurationStore(HomekitConfigurationStore store) {
+		advertiser.setConfigurationStore(store);
+	}
+	
+	/**
+	 * By default, the bridge advertises itself at revision 1, and advances the revision whenever the accessory
+	 * database changes, as described in {@link HomekitConfigurationStore}. This sets the revision explicitly, for
+	 * applications that manage it themselves; later changes to the database advance it from here.
 	 * 
 	 * @param revision an integer, greater than or equal to one, indicating the revision of the accessory information
 	 * @throws IOException if there is an error in the underlying protocol, such as a TCP error
@@ -151,10 +230,7 @@ public class HomekitRoot {
 		if (revision < 1) {
 			throw new IllegalArgumentException("revision must be greater than or equal to 1");
 		}
-		this.configurationIndex = revision;
-		if (this.started) {
-			advertiser.setConfigurationIndex(revision);
-		}
+		advertiser.setConfigurationIndex(revision);
 	}
 	
 	HomekitRegistry getRegistry() {
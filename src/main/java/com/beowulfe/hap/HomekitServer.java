@@ -49,6 +49,27 @@ public class HomekitServer {
 		http = new HomekitHttpServer(port, Runtime.getRuntime().availableProcessors());
 	}
 
+	/**
+	 * Pair-setup and pair-verify run on a bounded executor of their own, so a burst of handshakes does not delay
+	 * requests to accessories. Its queue depth and wait times show whether it should be sized differently with
+	 * {@link HomekitPairingStats#THREADS_PROPERTY} and {@link HomekitPairingStats#QUEUE_PROPERTY}.
+	 * 
+	 * @return the queue metrics of pairing requests.
+	 */
+	public HomekitPairingStats getPairingStats() {
+		return http.getPairingStats();
+	}
+	
+	/**
+	 * Events for a controller that is not reading them fast enough are queued, keeping only the latest value of each
+	 * characteristic and at most {@link HomekitEventStats#QUEUE_PROPERTY} of them.
+	 * 
+	 * @return the counts of events queued, conflated and dropped.
+	 */
+	public HomekitEventStats getEventStats() {
+		return http.getEventStats();
+	}
+
 	/**
 	 * Stops the service, closing down existing connections and preventing new ones.
 	 */
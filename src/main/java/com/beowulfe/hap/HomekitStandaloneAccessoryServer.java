@@ -31,6 +31,16 @@ public class HomekitStandaloneAccessoryServer {
 	public void start() {
 		root.start();
 	}
+	
+	/**
+	 * Sets where the configuration index is kept across restarts.
+	 * 
+	 * @param store the store to keep the configuration index in.
+	 * @see HomekitRoot#setConfigurationStore(HomekitConfigurationStore)
+	 */
+	public void setConfigurationStore(HomekitConfigurationStore store) {
+		root.setConfigurationStore(store);
+	}
 
 	
 
@@ -0,0 +1,27 @@
+package com.beowulfe.hap;
+
+import com.beowulfe.hap.characteristics.Characteristic;
+
+/**
+ * Decides how long values read from each characteristic may be reused, for accessories whose backends are slow or
+ * rate limited. Whatever the policy, a cached value is discarded as soon as the characteristic reports a change to a
+ * subscribed controller. Set it with {@link HomekitRoot#setValueCachePolicy(HomekitValueCachePolicy)}.
+ */
+public interface HomekitValueCachePolicy {
+
+	/**
+	 * @param accessory the accessory the characteristic belongs to.
+	 * @param characteristic the characteristic being read.
+	 * @return milliseconds a value is reused for, 0 to only share reads that are in flight at the same time, or a
+	 * 	negative number to read the value every time.
+	 */
+	long getTimeToLive(HomekitAccessory accessory, Characteristic characteristic);
+
+	/**
+	 * @param accessory the accessory the characteristic belongs to.
+	 * @param characteristic the characteristic being read.
+	 * @return milliseconds after the time to live during which the old value is still returned, while a fresh one
+	 * 	is read in the background.
+	 */
+	long getStaleWhileRevalidate(HomekitAccessory accessory, Characteristic characteristic);
+}
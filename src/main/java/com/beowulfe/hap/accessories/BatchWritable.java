@@ -0,0 +1,24 @@
+package com.beowulfe.hap.accessories;
+
+import java.util.List;
+import java8.util.concurrent.CompletableFuture;
+
+import com.beowulfe.hap.characteristics.CharacteristicWrite;
+
+/**
+ * An accessory that takes all the values a controller writes to it in one request at once, for example to send them
+ * to the device in a single message. Accessories that do not implement this have each value set through its
+ * characteristic in turn. Either way, writes to different accessories are applied concurrently.
+ */
+public interface BatchWritable {
+
+	/**
+	 * Applies the writes, in the order the controller sent them. Writes can also be passed on one by one with
+	 * {@link CharacteristicWrite#apply()}.
+	 * 
+	 * @param writes the values written to this accessory's characteristics.
+	 * @return a future that completes once the values are set, or exceptionally if they could not be, in which case
+	 * 	every write in the batch is reported as failed.
+	 */
+	CompletableFuture<Void> writeBatch(List<CharacteristicWrite> writes);
+}
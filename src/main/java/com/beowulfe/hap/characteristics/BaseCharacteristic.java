@@ -29,6 +29,8 @@ public abstract class BaseCharacteristic<T> implements Characteristic {
 	private final boolean isReadable;
 	private final boolean isEventable;
 	private final String description;
+	private volatile ValueCache<T> valueCache;
+	private volatile EventFilter eventFilter;
 	
 	/**
 	 * Default constructor
@@ -68,28 +70,80 @@ public abstract class BaseCharacteristic<T> implements Characteristic {
 	 * @return a future that will complete with the JSON builder for the object.
 	 */
 	protected CompletableFuture<JsonObjectBuilder> makeBuilder(int instanceId) {
-		return getValue().exceptionally(t -> {
+		return readValue().exceptionally(t -> {
 			logger.error("Could not retrieve value "+this.getClass().getName(), t);
 			return null;
 		}).thenApply(value -> {
-			JsonArrayBuilder perms = Json.createArrayBuilder();
-			if (isWritable) {
-				perms.add("pw");
-			}
-			if (isReadable) {
-				perms.add("pr");
-			}
-			if (isEventable) {
-				perms.add("ev");
-			}
-			JsonObjectBuilder builder = Json.createObjectBuilder()
-				.add("iid", instanceId)
-				.add("type", type)
-				.add("perms", perms.build())
-				.add("format", format)
-				.add("events", false)
-				.add("bonjour", false)
-				.add("description", description);
+			JsonObjectBuilder builder = Json.createObjectBuilder().add("iid", instanceId);
+			addMetadata(builder);
+			setJsonValue(builder, value);
+			return builder;
+		});
+	}
+	
+	/**
+	 * Adds the attributes of the JSON serialized form that never change, which is everything but the iid and the
+	 * value. Subclasses with attributes of their own add them after calling the super method.
+	 * 
+	 * @param builder the JSON builder to add the attributes to.
+	 */
+	protected void addMetadata(JsonObjectBuilder builder) {
+		JsonArrayBuilder perms = Json.createArrayBuilder();
+		if (isWritable) {
+			perms.add("pw");
+		}
+		if (isReadable) {
+			perms.add("pr");
+		}
+		if (isEventable) {
+			perms.add("ev");
+		}
+		builder
+			.add("type", type)
+			.add("perms", perms.build())
+			.add("format", format)
+			.add("events", false)
+			.add("bonjour", false)
+			.add("description", description);
+	}
+	
+	/**
+	 * Tells whether the iid, the attributes added by {@link #addMetadata(JsonObjectBuilder)} and the value make up
+	 * the whole serialized form, so that it can be precomputed. The default is false, as subclasses may add
+	 * attributes in {@link #makeBuilder(int)}. The characteristics of this package return true; their subclasses
+	 * that override makeBuilder must return false.
+	 * 
+	 * @return true if the serialized form can be built from {@link #getMetadata()}.
+	 */
+	protected boolean hasStaticMetadata() {
+		return false;
+	}
+	
+	/**
+	 * Builds the attributes that never change, so that they can be serialized once and combined with the iid and
+	 * the current value for each request.
+	 * 
+	 * @return the attributes added by {@link #addMetadata(JsonObjectBuilder)}, or null if the characteristic does not
+	 * 	have {@link #hasStaticMetadata() static metadata} and only {@link #toJson(int)} is complete.
+	 */
+	public JsonObject getMetadata() {
+		if (!hasStaticMetadata()) {
+			return null;
+		}
+		JsonObjectBuilder builder = Json.createObjectBuilder();
+		addMetadata(builder);
+		return builder.build();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Unlike {@link #supplyValue(JsonObjectBuilder)}, this does not fall back to the default value: the future
+	 * completes exceptionally if the value cannot be read, so that the failure can be reported.
+	 */
+	@Override
+	public CompletableFuture<JsonObjectBuilder> supplyValueAsync(JsonObjectBuilder builder) {
+		return readValue().thenApply(value -> {
 			setJsonValue(builder, value);
 			return builder;
 		});
@@ -101,25 +155,129 @@ public abstract class BaseCharacteristic<T> implements Characteristic {
 	@Override
 	public final void setValue(JsonValue jsonValue) {
 		try {
-			this.setValue(convert(jsonValue));
+			writeValue(jsonValue);
 		} catch (Exception e) {
 			logger.error("Error while setting JSON value", e);
 		}
 	}
 	
+	/**
+	 * Updates the value like {@link #setValue(JsonValue)}, but lets failures propagate so they can be reported. The
+	 * cached value, if there is a cache, is discarded once the value has been set.
+	 * 
+	 * @param jsonValue the JSON serialized value to set.
+	 * @throws IllegalArgumentException if the value cannot be converted to the type of the characteristic.
+	 * @throws Exception if the value cannot be set.
+	 */
+	public void writeValue(JsonValue jsonValue) throws Exception {
+		T value;
+		try {
+			value = convert(jsonValue);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Cannot convert "+jsonValue+" for "+getClass().getName(), e);
+		}
+		setValue(value);
+		// The accessory may have adjusted the value, so it is read again rather than cached as written
+		invalidateValue();
+	}
+	
+	/**
+	 * Retrieves the current value in its serialized form, as {@link #supplyValueAsync(JsonObjectBuilder)} adds it.
+	 * 
+	 * @return a future completing with the value, or with null if the serialized form has no value. It completes
+	 * 	exceptionally if the value cannot be read.
+	 */
+	public CompletableFuture<JsonValue> supplyJsonValueAsync() {
+		return supplyValueAsync(Json.createObjectBuilder()).thenApply(builder -> builder.build().get("value"));
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void supplyValue(JsonObjectBuilder builder) {
 		try {
-			setJsonValue(builder, getValue().get());
+			setJsonValue(builder, readValue().get());
 		} catch (InterruptedException | ExecutionException e) {
 			logger.error("Error retrieving value", e);
 			setJsonValue(builder, getDefault());
 		}
 	}
 	
+	/**
+	 * Puts a cache in front of {@link #getValue()}. Reads made while another is in flight share its result, and a
+	 * value is reused for timeToLive milliseconds. For staleWhileRevalidate milliseconds after that it is still
+	 * returned immediately, while a fresh value is read in the background.
+	 * 
+	 * @param timeToLive milliseconds a value is reused for, 0 to only share reads in flight, or a negative number to
+	 * 	remove the cache and read the value every time.
+	 * @param staleWhileRevalidate milliseconds after timeToLive during which the old value is still returned.
+	 */
+	public void setValueCache(long timeToLive, long staleWhileRevalidate) {
+		valueCache = timeToLive < 0 ? null : new ValueCache<T>(timeToLive, staleWhileRevalidate);
+	}
+	
+	/**
+	 * Limits the events published for changes of this characteristic, for accessories that report changes more often
+	 * than controllers need to hear about them.
+	 * 
+	 * @param minimumInterval milliseconds between two events, 0 for no limit, or a negative number to remove the
+	 * 	filter and publish every change.
+	 * @param deadband smallest difference of a numeric value from the last published one that is published. It is
+	 * 	never less than the characteristic's step.
+	 * @param relativeDeadband smallest difference as a fraction of the last published value.
+	 */
+	public void setEventFilter(long minimumInterval, double deadband, double relativeDeadband) {
+		eventFilter = minimumInterval < 0 ? null
+				: new EventFilter(minimumInterval, Math.max(deadband, getMinimumDeadband()), relativeDeadband);
+	}
+	
+	/**
+	 * @return the filter for events of this characteristic, or null if every change is published.
+	 */
+	public EventFilter getEventFilter() {
+		return eventFilter;
+	}
+	
+	/**
+	 * Discards the cached value, if there is a cache, so that the next read calls {@link #getValue()}. Called when
+	 * the characteristic reports a change or a controller writes to it.
+	 */
+	public void invalidateValue() {
+		ValueCache<T> cache = valueCache;
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+	
+	/**
+	 * Takes the new value an accessory reported along with a change. It replaces the cached value, if there is a
+	 * cache, and is serialized for the event so that subscribers can be told without reading it back.
+	 * 
+	 * @param value the value as reported by the accessory, or null if it did not report one.
+	 * @return the serialized value, or null if the characteristic does not take reported values of this type, in
+	 * 	which case the cached value is discarded and the value has to be read.
+	 */
+	public JsonValue reportValue(Object value) {
+		T converted = value == null ? null : fromReportedValue(value);
+		if (converted == null) {
+			invalidateValue();
+			return null;
+		}
+		ValueCache<T> cache = valueCache;
+		if (cache != null) {
+			cache.put(converted);
+		}
+		JsonObjectBuilder builder = Json.createObjectBuilder();
+		setJsonValue(builder, converted);
+		return builder.build().get("value");
+	}
+	
+	private CompletableFuture<T> readValue() {
+		ValueCache<T> cache = valueCache;
+		return cache == null ? getValue() : cache.get(this::getValue);
+	}
+	
 	/**
 	 * Converts from the JSON value to a Java object of the type T
 	 * 
@@ -150,6 +308,24 @@ public abstract class BaseCharacteristic<T> implements Characteristic {
 	 * @return a sensible default value.
 	 */
 	protected abstract T getDefault();
+	
+	/**
+	 * Converts a value reported by the accessory along with a change to the type of the characteristic. The default
+	 * implementation takes no reported values.
+	 * 
+	 * @param value the reported value, not null.
+	 * @return the converted value, or null if it cannot be converted.
+	 */
+	protected T fromReportedValue(Object value) {
+		return null;
+	}
+	
+	/**
+	 * @return the smallest change of a numeric value that an event filter publishes, or 0 for any change.
+	 */
+	protected double getMinimumDeadband() {
+		return 0;
+	}
 
 	/**
 	 * Writes the value key to the serialized characteristic
@@ -29,6 +29,14 @@ public abstract class BooleanCharacteristic extends BaseCharacteristic<Boolean>
 		
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected boolean hasStaticMetadata() {
+		return true;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -40,6 +48,14 @@ public abstract class BooleanCharacteristic extends BaseCharacteristic<Boolean>
 		return jsonValue.equals(JsonValue.TRUE);
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Boolean fromReportedValue(Object value) {
+		return value instanceof Boolean ? (Boolean) value : null;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
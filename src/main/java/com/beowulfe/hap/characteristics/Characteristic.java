@@ -26,6 +26,19 @@ public interface Characteristic {
 	 */
 	void supplyValue(JsonObjectBuilder characteristicBuilder);
 
+	/**
+	 * Retrieves the current value without blocking, and adds it to the passed JsonObjectBuilder the way
+	 * {@link #supplyValue(JsonObjectBuilder)} does. The default implementation calls supplyValue, and blocks for as
+	 * long as it does.
+	 * 
+	 * @param characteristicBuilder the JsonObjectBuilder to add the value attribute to.
+	 * @return a future that will complete with the builder once the value has been added.
+	 */
+	default CompletableFuture<JsonObjectBuilder> supplyValueAsync(JsonObjectBuilder characteristicBuilder) {
+		supplyValue(characteristicBuilder);
+		return CompletableFuture.completedFuture(characteristicBuilder);
+	}
+
 	/**
 	 * Creates the JSON representation of the characteristic, in accordance with the Homekit Accessory Protocol.
 	 * 
@@ -0,0 +1,54 @@
+package com.beowulfe.hap.characteristics;
+
+import javax.json.JsonValue;
+
+/**
+ * A value a controller has written to a characteristic, handed to a
+ * {@link com.beowulfe.hap.accessories.BatchWritable} accessory together with the other writes to it in the same
+ * request.
+ */
+public class CharacteristicWrite {
+
+	private final int instanceId;
+	private final Characteristic characteristic;
+	private final JsonValue value;
+
+	public CharacteristicWrite(int instanceId, Characteristic characteristic, JsonValue value) {
+		this.instanceId = instanceId;
+		this.characteristic = characteristic;
+		this.value = value;
+	}
+
+	/**
+	 * @return the instance id of the characteristic within its accessory.
+	 */
+	public int getInstanceId() {
+		return instanceId;
+	}
+
+	public Characteristic getCharacteristic() {
+		return characteristic;
+	}
+
+	/**
+	 * @return the value as sent by the controller.
+	 */
+	public JsonValue getValue() {
+		return value;
+	}
+
+	/**
+	 * Sets the value through the characteristic, as it would have been if the accessory did not take writes in
+	 * batches.
+	 * 
+	 * @throws IllegalArgumentException if the value cannot be converted to the characteristic's type.
+	 * @throws Exception if the characteristic fails to set the value.
+	 */
+	public void apply() throws Exception {
+		if (characteristic instanceof BaseCharacteristic) {
+			((BaseCharacteristic<?>) characteristic).writeValue(value);
+		} else {
+			characteristic.setValue(value);
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package com.beowulfe.hap.characteristics;
 
-import java8.util.concurrent.CompletableFuture;
-
 import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
@@ -37,13 +35,20 @@ public abstract class EnumCharacteristic extends BaseCharacteristic<Integer> {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected CompletableFuture<JsonObjectBuilder> makeBuilder(int iid) {
-		return super.makeBuilder(iid).thenApply(builder -> {
-			return builder
-					.add("minValue", 0)
-					.add("maxValue", maxValue)
-					.add("minStep", 1);
-		});
+	protected boolean hasStaticMetadata() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addMetadata(JsonObjectBuilder builder) {
+		super.addMetadata(builder);
+		builder
+			.add("minValue", 0)
+			.add("maxValue", maxValue)
+			.add("minStep", 1);
 	}
 	
 	/**
@@ -62,6 +67,15 @@ public abstract class EnumCharacteristic extends BaseCharacteristic<Integer> {
 		}
 	}
 	
+	/**
+	 * {@inheritDoc}. Takes the code of the value as a number; for the enums of the accessory properties the value is
+	 * read again instead.
+	 */
+	@Override
+	protected Integer fromReportedValue(Object value) {
+		return value instanceof Number ? ((Number) value).intValue() : null;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
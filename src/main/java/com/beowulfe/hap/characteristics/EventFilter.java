@@ -0,0 +1,54 @@
+package com.beowulfe.hap.characteristics;
+
+import javax.json.JsonNumber;
+import javax.json.JsonValue;
+
+/**
+ * Decides which changes of a characteristic are worth an event. Changes are published at most once per minimum
+ * interval, and only if the value differs from the one last published: for numbers by at least the larger of the
+ * absolute deadband and the relative deadband times the last value, for other values by not being equal.
+ */
+public final class EventFilter {
+
+	private final long minimumInterval;
+	private final double deadband;
+	private final double relativeDeadband;
+
+	/**
+	 * @param minimumInterval milliseconds between two events, or 0 for no limit.
+	 * @param deadband smallest difference of a number from the last published value that is published.
+	 * @param relativeDeadband smallest difference as a fraction of the last published value.
+	 */
+	EventFilter(long minimumInterval, double deadband, double relativeDeadband) {
+		this.minimumInterval = Math.max(0, minimumInterval);
+		this.deadband = Math.max(0, deadband);
+		this.relativeDeadband = Math.max(0, relativeDeadband);
+	}
+
+	/**
+	 * @return milliseconds between two events. Changes in between are held back, and the latest of them is published
+	 * 	when the interval is over.
+	 */
+	public long getMinimumInterval() {
+		return minimumInterval;
+	}
+
+	/**
+	 * @param published the value last published, or null if none has been.
+	 * @param value the new value.
+	 * @return whether the new value should be published.
+	 */
+	public boolean isSignificant(JsonValue published, JsonValue value) {
+		if (published == null) {
+			return true;
+		}
+		if (published instanceof JsonNumber && value instanceof JsonNumber) {
+			double last = ((JsonNumber) published).doubleValue();
+			double threshold = Math.max(deadband, relativeDeadband * Math.abs(last));
+			double difference = Math.abs(((JsonNumber) value).doubleValue() - last);
+			// Values are rounded to their step, so a difference of one step may come out a hair below it
+			return threshold == 0 ? difference != 0 : difference >= threshold * (1 - 1e-9);
+		}
+		return !published.equals(value);
+	}
+}
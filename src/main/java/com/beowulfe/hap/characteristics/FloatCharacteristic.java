@@ -48,12 +48,21 @@ public abstract class FloatCharacteristic extends BaseCharacteristic<Double> {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected CompletableFuture<JsonObjectBuilder> makeBuilder(int iid) {
-		return super.makeBuilder(iid).thenApply(builder -> builder
-                .add("minValue", minValue)
-                .add("maxValue", maxValue)
-                .add("minStep", minStep)
-                .add("unit", unit));
+	protected boolean hasStaticMetadata() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addMetadata(JsonObjectBuilder builder) {
+		super.addMetadata(builder);
+		builder
+			.add("minValue", minValue)
+			.add("maxValue", maxValue)
+			.add("minStep", minStep)
+			.add("unit", unit);
 	}
 
 	/**
@@ -69,24 +78,46 @@ public abstract class FloatCharacteristic extends BaseCharacteristic<Double> {
 	 */
 	@Override
 	protected final CompletableFuture<Double> getValue() {
+		return getDoubleValue().thenApply(this::normalize);
+	}
+	
+	/**
+	 * {@inheritDoc}. Numbers are rounded and limited to the range like the values of getDoubleValue.
+	 */
+	@Override
+	protected Double fromReportedValue(Object value) {
+		return value instanceof Number ? normalize(((Number) value).doubleValue()) : null;
+	}
+	
+	/**
+	 * {@inheritDoc}. Differences smaller than minStep are lost to rounding anyway.
+	 */
+	@Override
+	protected double getMinimumDeadband() {
+		return minStep;
+	}
+	
+	/**
+	 * Rounds the value to the minStep supplied in the constructor, and replaces values out of range with the nearest
+	 * bound.
+	 */
+	private Double normalize(Double d) {
+		if (d == null) {
+			return null;
+		}
 		double rounder = 1 / this.minStep;
-		return getDoubleValue().thenApply(d -> d == null ? null : Math.round(d * rounder) / rounder)
-				.thenApply(d -> {
-                    if (d != null) {
-                        if (d < minValue) {
-                            LOGGER.warn("Detected value out of range " + d
-									+ ". Returning min value instead. Characteristic " + this);
-                            return minValue;
-                        }
-                        if (d > maxValue) {
-							LOGGER.warn("Detected value out of range " + d
-									+ ". Returning max value instead. Characteristic " + this);
-                            return maxValue;
-                        }
-                        return d;
-                    }
-                    return null;
-                });
+		d = Math.round(d * rounder) / rounder;
+		if (d < minValue) {
+			LOGGER.warn("Detected value out of range " + d
+					+ ". Returning min value instead. Characteristic " + this);
+			return minValue;
+		}
+		if (d > maxValue) {
+			LOGGER.warn("Detected value out of range " + d
+					+ ". Returning max value instead. Characteristic " + this);
+			return maxValue;
+		}
+		return d;
 	}
 	
 	/**
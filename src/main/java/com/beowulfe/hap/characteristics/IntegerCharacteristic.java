@@ -1,7 +1,5 @@
 package com.beowulfe.hap.characteristics;
 
-import java8.util.concurrent.CompletableFuture;
-
 import javax.json.JsonNumber;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
@@ -41,14 +39,37 @@ public abstract class IntegerCharacteristic extends BaseCharacteristic<Integer>
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected CompletableFuture<JsonObjectBuilder> makeBuilder(int iid) {
-		return super.makeBuilder(iid).thenApply(builder -> {
-			return builder
-					.add("minValue", minValue)
-					.add("maxValue", maxValue)
-					.add("minStep", 1)
-					.add("unit", unit);
-		});
+	protected boolean hasStaticMetadata() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addMetadata(JsonObjectBuilder builder) {
+		super.addMetadata(builder);
+		builder
+			.add("minValue", minValue)
+			.add("maxValue", maxValue)
+			.add("minStep", 1)
+			.add("unit", unit);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected Integer fromReportedValue(Object value) {
+		return value instanceof Number ? ((Number) value).intValue() : null;
+	}
+	
+	/**
+	 * {@inheritDoc}. Integers are published with a minStep of 1.
+	 */
+	@Override
+	protected double getMinimumDeadband() {
+		return 1;
 	}
 	
 	/**
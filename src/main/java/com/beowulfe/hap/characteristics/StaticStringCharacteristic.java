@@ -38,8 +38,17 @@ public class StaticStringCharacteristic extends BaseCharacteristic<String> {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected CompletableFuture<JsonObjectBuilder> makeBuilder(int iid) {
-		return super.makeBuilder(iid).thenApply(builder -> builder.add("maxLen", MAX_LEN));
+	protected boolean hasStaticMetadata() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void addMetadata(JsonObjectBuilder builder) {
+		super.addMetadata(builder);
+		builder.add("maxLen", MAX_LEN);
 	}
 
 	/**
@@ -0,0 +1,103 @@
+package com.beowulfe.hap.characteristics;
+
+import java.util.concurrent.TimeUnit;
+import java8.util.concurrent.CompletableFuture;
+import java8.util.function.Supplier;
+
+/**
+ * Shares reads of a characteristic's value. Reads that arrive while one is in flight get its future instead of
+ * starting their own, and a value is reused for its time to live. For a while after that it is still returned
+ * immediately, while a fresh value is read in the background. Failed reads are not cached.
+ */
+final class ValueCache<T> {
+
+	private final long timeToLive;
+	private final long staleWhileRevalidate;
+
+	private CompletableFuture<T> inFlight;
+	private boolean hasValue = false;
+	private T value;
+	private long readAt;
+	/**
+	 * Incremented by {@link #invalidate()}, so that a read started before it cannot store its value.
+	 */
+	private long generation = 0;
+
+	/**
+	 * @param timeToLive milliseconds a value is reused for, 0 to only share reads in flight.
+	 * @param staleWhileRevalidate milliseconds after the time to live during which the old value is still returned.
+	 */
+	ValueCache(long timeToLive, long staleWhileRevalidate) {
+		this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+		this.staleWhileRevalidate = TimeUnit.MILLISECONDS.toNanos(staleWhileRevalidate);
+	}
+
+	CompletableFuture<T> get(Supplier<CompletableFuture<T>> read) {
+		CompletableFuture<T> result;
+		CompletableFuture<T> started = null;
+		long startedGeneration;
+		synchronized (this) {
+			long age = System.nanoTime() - readAt;
+			if (hasValue && age < timeToLive) {
+				return CompletableFuture.completedFuture(value);
+			}
+			if (inFlight == null) {
+				inFlight = started = new CompletableFuture<>();
+			}
+			startedGeneration = generation;
+			result = hasValue && age < timeToLive + staleWhileRevalidate ? CompletableFuture.completedFuture(value) : inFlight;
+		}
+		if (started != null) {
+			// The read is started outside the lock, as getValue may do slow work before returning its future
+			CompletableFuture<T> source;
+			try {
+				source = read.get();
+			} catch (RuntimeException e) {
+				source = new CompletableFuture<>();
+				source.completeExceptionally(e);
+			}
+			CompletableFuture<T> shared = started;
+			source.whenComplete((v, t) -> complete(shared, startedGeneration, v, t));
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets the cached value and any read in flight, so the next read goes to the characteristic.
+	 */
+	synchronized void invalidate() {
+		hasValue = false;
+		value = null;
+		inFlight = null;
+		generation++;
+	}
+
+	/**
+	 * Stores a value that is known to be current, in place of the cached one and of any read in flight.
+	 */
+	synchronized void put(T v) {
+		inFlight = null;
+		generation++;
+		hasValue = true;
+		value = v;
+		readAt = System.nanoTime();
+	}
+
+	private void complete(CompletableFuture<T> shared, long startedGeneration, T v, Throwable t) {
+		synchronized (this) {
+			if (inFlight == shared) {
+				inFlight = null;
+			}
+			if (t == null && startedGeneration == generation) {
+				hasValue = true;
+				value = v;
+				readAt = System.nanoTime();
+			}
+		}
+		if (t != null) {
+			shared.completeExceptionally(t);
+		} else {
+			shared.complete(v);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package com.beowulfe.hap.impl;
+
+import com.beowulfe.hap.characteristics.Characteristic;
+
+/**
+ * Immutable lookup of characteristics by accessory and instance id. The two ids are packed into one long key in an
+ * open-addressing table with linear probing, so a lookup neither boxes the ids nor allocates.
+ */
+final class CharacteristicIndex {
+
+	private final long[] keys;
+	private final Characteristic[] values;
+	private final int mask;
+
+	/**
+	 * @param aids accessory id of each characteristic.
+	 * @param iids instance id of each characteristic.
+	 */
+	CharacteristicIndex(int[] aids, int[] iids, Characteristic[] characteristics, int size) {
+		// At most half full, so probe sequences stay short
+		int capacity = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+		keys = new long[capacity];
+		values = new Characteristic[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < size; i++) {
+			long key = key(aids[i], iids[i]);
+			int slot = slot(key);
+			while (values[slot] != null && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = characteristics[i];
+		}
+	}
+
+	/**
+	 * @return the characteristic, or null if there is none with these ids.
+	 */
+	Characteristic get(int aid, int iid) {
+		long key = key(aid, iid);
+		for (int slot = slot(key); values[slot] != null; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+		return null;
+	}
+
+	private static long key(int aid, int iid) {
+		return (long) aid << 32 | (iid & 0xffffffffL);
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ hash >>> 32) & mask;
+	}
+}
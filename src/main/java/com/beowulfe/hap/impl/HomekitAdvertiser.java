@@ -9,12 +9,15 @@ import java.util.Map;
 import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceInfo;
 
+import com.beowulfe.hap.HomekitConfigurationStore;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class HomekitAdvertiser {
 	
 	private static final String SERVICE_TYPE = "_hap._tcp.local.";
+	private static final int MAX_CONFIGURATION_INDEX = 65535;
 	
 	private final MdnsRegistry mdnsRegistry;
 	private boolean discoverable = true;
@@ -24,7 +27,8 @@ public class HomekitAdvertiser {
 	private String label;
 	private String mac;
 	private int port;
-	private int configurationIndex;
+	private int configurationIndex = 1;
+	private HomekitConfigurationStore configurationStore = new MemoryConfigurationStore();
 
 	public static interface MdnsRegistry {
 		public void registerService(String serviceType, String label, int port, Map<String, String> properties) throws IOException;
@@ -51,14 +55,13 @@ public class HomekitAdvertiser {
 		this.mdnsRegistry = mdnsRegistry;
 	}
 
-	public synchronized void advertise(String label, String mac, int port, int configurationIndex) throws Exception {
+	public synchronized void advertise(String label, String mac, int port) throws Exception {
 		if (isAdvertising) {
 			throw new IllegalStateException("Homekit advertiser is already running");
 		}
 		this.label = label;
 		this.mac = mac;
 		this.port = port;
-		this.configurationIndex = configurationIndex;
 		
 		logger.info("Advertising accessory "+label);
 	
@@ -82,7 +85,41 @@ public class HomekitAdvertiser {
 		}
 	}
 	
+	public synchronized void setConfigurationStore(HomekitConfigurationStore configurationStore) {
+		this.configurationStore = configurationStore;
+	}
+	
+	/**
+	 * Advances the configuration index if the accessory database differs from the one the stored index was
+	 * advertised for. The first fingerprint given to a store keeps the index it already has.
+	 * 
+	 * @param fingerprint the fingerprint of the accessory database, from {@link HomekitRegistry#getFingerprint()}.
+	 * @throws IOException if the index cannot be stored or re-advertised.
+	 */
+	public synchronized void setFingerprint(String fingerprint) throws IOException {
+		int stored = configurationStore.getConfigurationIndex();
+		String storedFingerprint = configurationStore.getFingerprint();
+		if (stored < 1 || storedFingerprint == null) {
+			int index = stored < 1 ? configurationIndex : stored;
+			configurationStore.store(index, fingerprint);
+			setConfigurationIndex(index);
+		} else if (!fingerprint.equals(storedFingerprint)) {
+			int next = stored >= MAX_CONFIGURATION_INDEX ? 1 : stored + 1;
+			logger.info("Accessory database changed, advancing configuration index to "+next);
+			configurationStore.store(next, fingerprint);
+			setConfigurationIndex(next);
+		} else {
+			setConfigurationIndex(stored);
+		}
+	}
+	
+	/**
+	 * Sets the configuration index explicitly. Later changes to the accessory database advance it from here.
+	 */
 	public synchronized void setConfigurationIndex(int revision) throws IOException {
+		if (configurationStore.getConfigurationIndex() != revision) {
+			configurationStore.store(revision, configurationStore.getFingerprint());
+		}
 		if (this.configurationIndex != revision) {
 			this.configurationIndex = revision;
 			if (isAdvertising) {
@@ -1,24 +1,35 @@
 package com.beowulfe.hap.impl;
 
 import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.HomekitEventPolicy;
+import com.beowulfe.hap.HomekitValueCachePolicy;
 import com.beowulfe.hap.Service;
+import com.beowulfe.hap.characteristics.BaseCharacteristic;
 import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.impl.json.CharacteristicTemplate;
 import com.beowulfe.hap.impl.services.AccessoryInformationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
 public class HomekitRegistry {
 	
 	private final static Logger logger = LoggerFactory.getLogger(HomekitRegistry.class);
 
 	private final String label;
 	private final Map<Integer, HomekitAccessory> accessories;
-	private final Map<HomekitAccessory, List<Service>> services = new HashMap<>();
-	private final Map<HomekitAccessory, Map<Integer, Characteristic>> characteristics = new HashMap<>();
+	private volatile RegistrySnapshot snapshot = RegistrySnapshot.EMPTY;
 	private boolean isAllowUnauthenticatedRequests = false;
+	private HomekitValueCachePolicy valueCachePolicy;
+	private HomekitEventPolicy eventPolicy;
 	
 	public HomekitRegistry(String label) {
 		this.label = label;
@@ -26,30 +37,129 @@ public class HomekitRegistry {
 		reset();
 	}
 	
+	/**
+	 * Rebuilds the attribute database from the accessories added so far. Requests that are being handled meanwhile
+	 * keep using the previous one until the new one is complete.
+	 */
 	public synchronized void reset() {
-		characteristics.clear();
-		services.clear();		
-		for (HomekitAccessory accessory: accessories.values()) {
-			int iid = 0;
-			List<Service> newServices;
-			try {
-				newServices = new ArrayList<>(2);
-				newServices.add(new AccessoryInformationService(accessory));
-				newServices.addAll(accessory.getServices());
-			} catch (Exception e) {
-				logger.error("Could not instantiate services for accessory "+accessory.getLabel(), e);
-				services.put(accessory, Collections.emptyList());
+		publish(false);
+	}
+	
+	/**
+	 * Publishes the accessories added or removed since the last reset or update. Accessories that were already
+	 * registered keep their services and instance ids as they were, so controllers that are connected can go on using
+	 * them.
+	 */
+	public synchronized void update() {
+		publish(true);
+	}
+	
+	private void publish(boolean incremental) {
+		RegistrySnapshot previous = snapshot;
+		List<Integer> aids = new ArrayList<>(accessories.keySet());
+		Collections.sort(aids);
+		Map<Integer, PublishedAccessory> entries = new LinkedHashMap<>();
+		for (Integer aid: aids) {
+			HomekitAccessory accessory = accessories.get(aid);
+			if (accessory == null) {
 				continue;
 			}
-			Map<Integer, Characteristic> newCharacteristics = new HashMap<>();
-			services.put(accessory, newServices);
-			for (Service service: newServices) {
-				iid++;
-				for (Characteristic characteristic: service.getCharacteristics()) {
-					newCharacteristics.put(++iid, characteristic);
+			PublishedAccessory entry = incremental ? previous.get(aid) : null;
+			if (entry == null || entry.accessory != accessory) {
+				entry = build(aid, accessory);
+			}
+			entries.put(aid, entry);
+		}
+		snapshot = new RegistrySnapshot(Collections.unmodifiableMap(entries), computeFingerprint(entries.values()));
+	}
+	
+	private PublishedAccessory build(int aid, HomekitAccessory accessory) {
+		int iid = 0;
+		List<Service> newServices;
+		try {
+			newServices = new ArrayList<>(2);
+			newServices.add(new AccessoryInformationService(accessory));
+			newServices.addAll(accessory.getServices());
+		} catch (Exception e) {
+			logger.error("Could not instantiate services for accessory "+accessory.getLabel(), e);
+			return new PublishedAccessory(aid, accessory, Collections.<Service>emptyList(),
+					Collections.<PublishedAccessory.PublishedService>emptyList(),
+					Collections.<Integer, Characteristic>emptyMap(), "a"+aid);
+		}
+		Map<Integer, Characteristic> newCharacteristics = new HashMap<>();
+		List<PublishedAccessory.PublishedService> published = new ArrayList<>(newServices.size());
+		StringBuilder description = new StringBuilder("a").append(aid);
+		for (Service service: newServices) {
+			int serviceId = ++iid;
+			String type = service.getType();
+			description.append(";s").append(serviceId).append(',').append(type);
+			List<Characteristic> characteristics = service.getCharacteristics();
+			List<CharacteristicTemplate> templates = new ArrayList<>(characteristics.size());
+			for (Characteristic characteristic: characteristics) {
+				if (valueCachePolicy != null && characteristic instanceof BaseCharacteristic) {
+					((BaseCharacteristic<?>) characteristic).setValueCache(
+							valueCachePolicy.getTimeToLive(accessory, characteristic),
+							valueCachePolicy.getStaleWhileRevalidate(accessory, characteristic));
+				}
+				if (eventPolicy != null && characteristic instanceof BaseCharacteristic) {
+					((BaseCharacteristic<?>) characteristic).setEventFilter(
+							eventPolicy.getMinimumInterval(accessory, characteristic),
+							eventPolicy.getDeadband(accessory, characteristic),
+							eventPolicy.getRelativeDeadband(accessory, characteristic));
 				}
+				newCharacteristics.put(++iid, characteristic);
+				templates.add(CharacteristicTemplate.compile(characteristic, iid));
+				description.append(";c").append(iid).append(',');
+				describe(characteristic, description);
 			}
-			characteristics.put(accessory, newCharacteristics);
+			published.add(new PublishedAccessory.PublishedService(serviceId, type,
+					Collections.unmodifiableList(templates)));
+		}
+		return new PublishedAccessory(aid, accessory, Collections.unmodifiableList(newServices),
+				Collections.unmodifiableList(published), Collections.unmodifiableMap(newCharacteristics),
+				description.toString());
+	}
+	
+	/**
+	 * @return a hash of the attribute database as of the last reset: the ids, types and metadata of every accessory,
+	 * 	service and characteristic, but not their values.
+	 */
+	public String getFingerprint() {
+		return snapshot.fingerprint;
+	}
+	
+	/**
+	 * @param entries the entries ordered by accessory id.
+	 */
+	private static String computeFingerprint(Collection<PublishedAccessory> entries) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		for (PublishedAccessory entry: entries) {
+			digest.update((entry.description+'\n').getBytes(StandardCharsets.UTF_8));
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b: digest.digest()) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+	
+	/**
+	 * Appends the metadata of the characteristic with its attributes sorted by name, or its class if it has none.
+	 */
+	private static void describe(Characteristic characteristic, StringBuilder description) {
+		JsonObject metadata = characteristic instanceof BaseCharacteristic ?
+				((BaseCharacteristic<?>) characteristic).getMetadata() : null;
+		if (metadata == null) {
+			description.append(characteristic.getClass().getName());
+			return;
+		}
+		for (Map.Entry<String, JsonValue> attribute: new TreeMap<>(metadata).entrySet()) {
+			description.append(attribute.getKey()).append('=').append(attribute.getValue()).append(',');
 		}
 	}
 	
@@ -61,16 +171,37 @@ public class HomekitRegistry {
 		return accessories.values();
 	}
 	
+	/**
+	 * @return the accessory with the id as of the last reset, or null if there is none.
+	 */
+	public HomekitAccessory getAccessory(Integer aid) {
+		PublishedAccessory entry = snapshot.get(aid);
+		return entry == null ? null : entry.accessory;
+	}
+	
 	public List<Service> getServices(Integer aid) {
-		return Collections.unmodifiableList(services.get(accessories.get(aid)));
+		PublishedAccessory entry = snapshot.get(aid);
+		return entry == null ? Collections.<Service>emptyList() : entry.services;
 	}
 	
 	public Map<Integer, Characteristic> getCharacteristics(Integer aid) {
-		Map<Integer, Characteristic> characteristics = this.characteristics.get(accessories.get(aid));
-		if (characteristics == null) {
-			return Collections.emptyMap();
-		}
-		return Collections.unmodifiableMap(characteristics);
+		PublishedAccessory entry = snapshot.get(aid);
+		return entry == null ? Collections.<Integer, Characteristic>emptyMap() : entry.characteristics;
+	}
+	
+	/**
+	 * @return the characteristic with the instance id in the accessory, or null if there is none.
+	 */
+	public Characteristic getCharacteristic(int aid, int iid) {
+		return snapshot.index.get(aid, iid);
+	}
+
+	/**
+	 * @return the accessories as of the last reset or update, ordered by id. Unlike {@link #getAccessories()}, their
+	 * 	services and serialization templates always match each other.
+	 */
+	public Collection<PublishedAccessory> getPublishedAccessories() {
+		return snapshot.entries.values();
 	}
 
 	public void add(HomekitAccessory accessory) {
@@ -81,6 +212,20 @@ public class HomekitRegistry {
 		accessories.remove(accessory.getId());
 	}
 	
+	/**
+	 * Sets the cache policy applied to characteristics from the next reset on.
+	 */
+	public synchronized void setValueCachePolicy(HomekitValueCachePolicy valueCachePolicy) {
+		this.valueCachePolicy = valueCachePolicy;
+	}
+	
+	/**
+	 * Sets the policy filtering events of characteristics from the next reset on.
+	 */
+	public synchronized void setEventPolicy(HomekitEventPolicy eventPolicy) {
+		this.eventPolicy = eventPolicy;
+	}
+	
 	public boolean isAllowUnauthenticatedRequests() {
 		return isAllowUnauthenticatedRequests;
 	}
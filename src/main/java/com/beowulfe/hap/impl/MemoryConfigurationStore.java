@@ -0,0 +1,29 @@
+package com.beowulfe.hap.impl;
+
+import com.beowulfe.hap.HomekitConfigurationStore;
+
+/**
+ * Keeps the configuration index for as long as the server runs, so that changes to the accessories made after start
+ * are announced, but starts from scratch every time.
+ */
+public class MemoryConfigurationStore implements HomekitConfigurationStore {
+
+	private int configurationIndex = 0;
+	private String fingerprint;
+
+	@Override
+	public synchronized int getConfigurationIndex() {
+		return configurationIndex;
+	}
+
+	@Override
+	public synchronized String getFingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	public synchronized void store(int configurationIndex, String fingerprint) {
+		this.configurationIndex = configurationIndex;
+		this.fingerprint = fingerprint;
+	}
+}
@@ -0,0 +1,80 @@
+package com.beowulfe.hap.impl;
+
+import java.util.List;
+import java.util.Map;
+
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.Service;
+import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.impl.json.CharacteristicTemplate;
+
+/**
+ * The attribute database of one accessory, as published by {@link HomekitRegistry}. It never changes once built, and
+ * its services and characteristics are those the accessory had at the time, whatever it returns now. Accessories
+ * that stay registered keep theirs from one reset or update to the next, with the same instance ids.
+ */
+public final class PublishedAccessory {
+
+	/**
+	 * A service with the templates of its characteristics, in instance id order.
+	 */
+	public static final class PublishedService {
+
+		private final int id;
+		private final String type;
+		private final List<CharacteristicTemplate> templates;
+
+		PublishedService(int id, String type, List<CharacteristicTemplate> templates) {
+			this.id = id;
+			this.type = type;
+			this.templates = templates;
+		}
+
+		public int getId() {
+			return id;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public List<CharacteristicTemplate> getTemplates() {
+			return templates;
+		}
+	}
+
+	final int id;
+	final HomekitAccessory accessory;
+	final List<Service> services;
+	final List<PublishedService> published;
+	final Map<Integer, Characteristic> characteristics;
+	/**
+	 * The part of the registry fingerprint contributed by this accessory.
+	 */
+	final String description;
+
+	/**
+	 * All collections are expected to be unmodifiable already.
+	 */
+	PublishedAccessory(int id, HomekitAccessory accessory, List<Service> services, List<PublishedService> published,
+			Map<Integer, Characteristic> characteristics, String description) {
+		this.id = id;
+		this.accessory = accessory;
+		this.services = services;
+		this.published = published;
+		this.characteristics = characteristics;
+		this.description = description;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public HomekitAccessory getAccessory() {
+		return accessory;
+	}
+
+	public List<PublishedService> getPublishedServices() {
+		return published;
+	}
+}
@@ -0,0 +1,48 @@
+package com.beowulfe.hap.impl;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.beowulfe.hap.characteristics.Characteristic;
+
+/**
+ * The attribute database as built by {@link HomekitRegistry}. A snapshot is never modified after it has been built; a
+ * reset or update builds a new one and swaps it in, so readers need no lock and always see a consistent set of
+ * accessories, services and characteristics.
+ */
+final class RegistrySnapshot {
+
+	static final RegistrySnapshot EMPTY = new RegistrySnapshot(Collections.<Integer, PublishedAccessory>emptyMap(), null);
+
+	/**
+	 * Entries by accessory id, ordered by id.
+	 */
+	final Map<Integer, PublishedAccessory> entries;
+	final CharacteristicIndex index;
+	final String fingerprint;
+
+	RegistrySnapshot(Map<Integer, PublishedAccessory> entries, String fingerprint) {
+		this.entries = entries;
+		this.fingerprint = fingerprint;
+		int size = 0;
+		for (PublishedAccessory entry: entries.values()) {
+			size += entry.characteristics.size();
+		}
+		int[] aids = new int[size];
+		int[] iids = new int[size];
+		Characteristic[] characteristics = new Characteristic[size];
+		int i = 0;
+		for (Map.Entry<Integer, PublishedAccessory> entry: entries.entrySet()) {
+			for (Map.Entry<Integer, Characteristic> characteristic: entry.getValue().characteristics.entrySet()) {
+				aids[i] = entry.getKey();
+				iids[i] = characteristic.getKey();
+				characteristics[i++] = characteristic.getValue();
+			}
+		}
+		index = new CharacteristicIndex(aids, iids, characteristics, size);
+	}
+
+	PublishedAccessory get(Integer aid) {
+		return entries.get(aid);
+	}
+}
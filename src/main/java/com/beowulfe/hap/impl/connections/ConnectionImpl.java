@@ -1,43 +1,36 @@
 package com.beowulfe.hap.impl.connections;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.Collection;
 import java8.util.function.Consumer;
-import java8.util.stream.StreamSupport;
 
-import org.bouncycastle.util.Pack;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.beowulfe.hap.HomekitAuthInfo;
 import com.beowulfe.hap.impl.HomekitRegistry;
-import com.beowulfe.hap.impl.crypto.ChachaDecoder;
-import com.beowulfe.hap.impl.crypto.ChachaEncoder;
+import com.beowulfe.hap.impl.crypto.AeadBackends;
+import com.beowulfe.hap.impl.crypto.SessionCipher;
 import com.beowulfe.hap.impl.http.*;
 import com.beowulfe.hap.impl.pairing.UpgradeResponse;
+import com.beowulfe.hap.impl.pairing.PairingKeyCache;
 import com.beowulfe.hap.impl.pairing.PairingListener;
 
 class ConnectionImpl implements HomekitClientConnection {
 
 	private final HttpSession httpSession;
-	private LengthPrefixedByteArrayProcessor binaryProcessor;
-	private int inboundBinaryMessageCount = 0;
-	private int outboundBinaryMessageCount = 0;
-	private byte[] readKey;
-	private byte[] writeKey;
+	private SessionCipher readCipher;
+	private SessionCipher writeCipher;
 	private boolean isUpgraded = false;
 	private final Consumer<HttpResponse> outOfBandMessageCallback;
 	private final SubscriptionManager subscriptions;
 	
 	private final static Logger LOGGER = LoggerFactory.getLogger(HomekitClientConnection.class);
+	private final static int PRECOMPUTE_FRAMES = Integer.getInteger(SessionCipher.PRECOMPUTE_PROPERTY, 0);
 	
 	public ConnectionImpl(HomekitAuthInfo authInfo, HomekitRegistry registry, 
 			Consumer<HttpResponse> outOfBandMessageCallback, SubscriptionManager subscriptions,
-			PairingListener pairingListener) {
-		httpSession = new HttpSession(authInfo, registry, subscriptions, this, pairingListener);
+			PairingListener pairingListener, PairingKeyCache keys) {
+		httpSession = new HttpSession(authInfo, registry, subscriptions, this, pairingListener, keys);
 		this.outOfBandMessageCallback = outOfBandMessageCallback;
 		this.subscriptions = subscriptions;
 	}
@@ -52,83 +45,44 @@ class ConnectionImpl implements HomekitClientConnection {
 				httpSession.handleAuthenticatedRequest(request) : httpSession.handleRequest(request);
 		if (response instanceof UpgradeResponse) {
 			isUpgraded = true;
-			readKey = ((UpgradeResponse) response).getReadKey().array();
-			writeKey = ((UpgradeResponse) response).getWriteKey().array();
+			readCipher = new SessionCipher(((UpgradeResponse) response).getReadKey().array());
+			writeCipher = new SessionCipher(AeadBackends.get(), ((UpgradeResponse) response).getWriteKey().array(),
+					PRECOMPUTE_FRAMES);
 		}
 		LOGGER.info(response.getStatusCode()+" "+request.getUri());
 		return response;
 	}
 	
 	@Override
-	public byte[] decryptRequest(byte[] ciphertext) {
+	public int decryptFrame(byte[] frame, int offset, int length, byte[] out, int outOffset) throws IOException {
 		if (!isUpgraded) {
-			throw new RuntimeException("Cannot handle binary before connection is upgraded");
-		}
-		if (binaryProcessor == null) {
-			binaryProcessor = new LengthPrefixedByteArrayProcessor();
-		}
-		Collection<byte[]> res = binaryProcessor.handle(ciphertext);
-		if (res.isEmpty()) {
-			return new byte[0];
-		} else {
-			try(ByteArrayOutputStream decrypted = new ByteArrayOutputStream()) {
-				StreamSupport.stream(res).map(msg -> decrypt(msg))
-						.forEach(bytes -> {
-							try {
-								decrypted.write(bytes);
-							} catch (Exception e) {
-								throw new RuntimeException(e);
-							}
-						});
-				return decrypted.toByteArray();
-			} catch (Exception e) {
-				throw new RuntimeException(e);
-			}
+			throw new IOException("Cannot handle binary before connection is upgraded");
 		}
+		return readCipher.open(frame, offset, 2, frame, offset + 2, length - 2, out, outOffset);
 	}
-	
 
 	@Override
-	public byte[] encryptResponse(byte[] response) throws IOException {
-		int offset=0;
-		try(ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-			while(offset < response.length) {
-				short length = (short) Math.min(response.length - offset, 0x400);
-				byte[] lengthBytes = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN)
-						.putShort(length).array();
-				baos.write(lengthBytes);
-				
-				byte[] nonce = Pack.longToLittleEndian(outboundBinaryMessageCount++);
-				byte[] plaintext;
-				if (response.length == length) {
-					plaintext = response;
-				} else {
-					plaintext = new byte[length];
-					System.arraycopy(response, offset, plaintext, 0, length);
-				}
-				offset += length;
-				baos.write(new ChachaEncoder(writeKey, nonce).encodeCiphertext(plaintext, lengthBytes));
-			}
-			return baos.toByteArray();
+	public int encryptFrame(byte[] plaintext, int offset, int length, byte[] out, int outOffset) throws IOException {
+		if (!isUpgraded) {
+			throw new IOException("Cannot handle binary before connection is upgraded");
 		}
+		out[outOffset] = (byte) length;
+		out[outOffset + 1] = (byte) (length >>> 8);
+		return 2 + writeCipher.seal(out, outOffset, 2, plaintext, offset, length, out, outOffset + 2);
 	}
-	
-	private byte[] decrypt(byte[] msg) {
-		byte[] mac = new byte[16];
-		byte[] ciphertext = new byte[msg.length - 16];
-		System.arraycopy(msg, 0, ciphertext, 0, msg.length - 16);
-		System.arraycopy(msg, msg.length - 16, mac, 0, 16);
-		byte[] additionalData = ByteBuffer.allocate(2).order(ByteOrder.LITTLE_ENDIAN)
-				.putShort((short) (msg.length - 16)).array();
-		try {
-			byte[] nonce = Pack.longToLittleEndian(inboundBinaryMessageCount++);
-			return new ChachaDecoder(readKey, nonce)
-				.decodeCiphertext(mac, additionalData, ciphertext);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+
+	@Override
+	public void precomputeOutbound() {
+		if (isUpgraded) {
+			writeCipher.precompute();
 		}
 	}
 
+	@Override
+	public boolean isPrecomputingOutbound() {
+		return isUpgraded && writeCipher.isPrecomputing();
+	}
+
 	@Override
 	public void close() {
 		subscriptions.removeConnection(this);
@@ -0,0 +1,91 @@
+package com.beowulfe.hap.impl.connections;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java8.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+import com.beowulfe.hap.impl.json.CharacteristicEvent;
+import com.beowulfe.hap.impl.json.EventController;
+
+/**
+ * Collects the changes published to one connection during a window that opens with the first of them, and sends them
+ * in one EVENT message when it closes. A characteristic that changes several times within the window is reported once,
+ * with its value at the time the message is built.
+ */
+class EventCoalescer {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(EventCoalescer.class);
+
+	private final HomekitClientConnection connection;
+	private final ScheduledExecutorService scheduler;
+	/**
+	 * Sends the messages of the connection in the order of their windows.
+	 */
+	private final SerialExecutor serial;
+	private final long window;
+	private Map<Long, CharacteristicEvent> pending = new LinkedHashMap<>();
+	private ScheduledFuture<?> flush;
+
+	/**
+	 * @param scheduler closes the window.
+	 * @param publisher reads the values and sends the message once the window has closed.
+	 * @param window length of the window in milliseconds.
+	 */
+	EventCoalescer(HomekitClientConnection connection, ScheduledExecutorService scheduler, Executor publisher,
+			long window) {
+		this.connection = connection;
+		this.scheduler = scheduler;
+		this.serial = new SerialExecutor(publisher);
+		this.window = window;
+	}
+
+	synchronized void add(CharacteristicEvent event) {
+		pending.put(event.getKey(), event);
+		if (flush == null) {
+			flush = scheduler.schedule(() -> serial.execute(this::flush), window, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Drops the pending changes, for a connection that has gone away.
+	 */
+	synchronized void cancel() {
+		if (flush != null) {
+			flush.cancel(false);
+			flush = null;
+		}
+		pending.clear();
+	}
+
+	/**
+	 * @return a future that completes once the message has been handed to the connection, or null if there was none.
+	 */
+	private CompletableFuture<?> flush() {
+		Collection<CharacteristicEvent> events;
+		synchronized (this) {
+			events = pending.values();
+			pending = new LinkedHashMap<>();
+			flush = null;
+		}
+		if (events.isEmpty()) {
+			return null;
+		}
+		return new EventController().getMessage(events).whenComplete((message, t) -> {
+			if (t != null) {
+				LOGGER.error("Failed to create new event message", t);
+			} else if (message != null) {
+				LOGGER.info("Publishing "+events.size()+" changes to "+connection.hashCode());
+				connection.outOfBand(message);
+			}
+		});
+	}
+}
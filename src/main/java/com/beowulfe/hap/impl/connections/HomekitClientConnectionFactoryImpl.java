@@ -3,10 +3,12 @@ package com.beowulfe.hap.impl.connections;
 import java8.util.function.Consumer;
 
 import com.beowulfe.hap.HomekitAuthInfo;
+import com.beowulfe.hap.impl.crypto.AeadBackends;
 import com.beowulfe.hap.impl.HomekitRegistry;
 import com.beowulfe.hap.impl.http.HomekitClientConnection;
 import com.beowulfe.hap.impl.http.HomekitClientConnectionFactory;
 import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.pairing.PairingKeyCache;
 import com.beowulfe.hap.impl.pairing.PairingListener;
 
 public class HomekitClientConnectionFactoryImpl implements HomekitClientConnectionFactory{
@@ -15,18 +17,23 @@ public class HomekitClientConnectionFactoryImpl implements HomekitClientConnecti
 	private final HomekitRegistry registry;
 	private final SubscriptionManager subscriptions;
 	private final PairingListener pairingListener;
+	private final PairingKeyCache keys;
 	
 	public HomekitClientConnectionFactoryImpl(HomekitAuthInfo authInfo,
-			HomekitRegistry registry, SubscriptionManager subscriptions, PairingListener pairingListener) {
+			HomekitRegistry registry, SubscriptionManager subscriptions, PairingListener pairingListener,
+			PairingKeyCache keys) {
 		this.registry = registry;
 		this.authInfo = authInfo;
 		this.subscriptions = subscriptions;
 		this.pairingListener = pairingListener;
+		this.keys = keys;
+		// Run the AEAD self-test and backend selection before the first controller connects
+		AeadBackends.get();
 	}
 	
 	@Override
 	public HomekitClientConnection createConnection(Consumer<HttpResponse> outOfBandMessageCallback) {
-		return new ConnectionImpl(authInfo, registry, outOfBandMessageCallback, subscriptions, pairingListener);
+		return new ConnectionImpl(authInfo, registry, outOfBandMessageCallback, subscriptions, pairingListener, keys);
 	}
 
 	
@@ -15,6 +15,7 @@ import com.beowulfe.hap.impl.http.HttpResponse;
 import com.beowulfe.hap.impl.json.AccessoryController;
 import com.beowulfe.hap.impl.json.CharacteristicsController;
 import com.beowulfe.hap.impl.pairing.PairVerificationManager;
+import com.beowulfe.hap.impl.pairing.PairingKeyCache;
 import com.beowulfe.hap.impl.pairing.PairingManager;
 import com.beowulfe.hap.impl.pairing.PairingUpdateController;
 import com.beowulfe.hap.impl.responses.InternalServerErrorResponse;
@@ -33,16 +34,18 @@ class HttpSession {
 	private final SubscriptionManager subscriptions;
 	private final HomekitClientConnection connection;
 	private final PairingListener pairingListener;
+	private final PairingKeyCache keys;
 	
 	private final static Logger logger = LoggerFactory.getLogger(HttpSession.class);
 	
 	public HttpSession(HomekitAuthInfo authInfo, HomekitRegistry registry, SubscriptionManager subscriptions,
-			HomekitClientConnection connection, PairingListener pairingListener) {
+			HomekitClientConnection connection, PairingListener pairingListener, PairingKeyCache keys) {
 		this.authInfo = authInfo;
 		this.registry = registry;
 		this.subscriptions = subscriptions;
 		this.connection = connection;
 		this.pairingListener = pairingListener;
+		this.keys = keys;
 	}
 
 	public HttpResponse handleRequest(HttpRequest request) throws IOException {
@@ -99,7 +102,7 @@ class HttpSession {
 		if (pairingManager == null) {
 			synchronized(HttpSession.class) {
 				if (pairingManager == null) {
-					pairingManager = new PairingManager(authInfo, registry, pairingListener);
+					pairingManager = new PairingManager(authInfo, registry, pairingListener, keys);
 				}
 			}
 		}
@@ -115,7 +118,7 @@ class HttpSession {
 		if (pairVerificationManager == null) {
 			synchronized(HttpSession.class) {
 				if (pairVerificationManager == null) {
-					pairVerificationManager = new PairVerificationManager(authInfo, registry);
+					pairVerificationManager = new PairVerificationManager(authInfo, registry, keys);
 				}
 			}
 		}
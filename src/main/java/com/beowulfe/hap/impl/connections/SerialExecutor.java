@@ -0,0 +1,66 @@
+package com.beowulfe.hap.impl.connections;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java8.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs asynchronous tasks one at a time, in the order they were submitted, on a shared executor. A task holds its
+ * turn until the future it returns completes, so the events of one characteristic or one connection are sent in
+ * order even when the values they read complete out of order. A task whose future never completes holds up the
+ * tasks after it.
+ */
+class SerialExecutor {
+
+	private final static Logger LOGGER = LoggerFactory.getLogger(SerialExecutor.class);
+
+	interface Task {
+
+		/**
+		 * @return a future that completes once the task is done, or null if it already is.
+		 */
+		CompletableFuture<?> run();
+	}
+
+	private final Executor executor;
+	private final Queue<Task> tasks = new ArrayDeque<>();
+	private boolean running = false;
+
+	SerialExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	synchronized void execute(Task task) {
+		tasks.add(task);
+		if (!running) {
+			running = true;
+			executor.execute(this::runNext);
+		}
+	}
+
+	private void runNext() {
+		Task task;
+		synchronized (this) {
+			task = tasks.poll();
+			if (task == null) {
+				running = false;
+				return;
+			}
+		}
+		CompletableFuture<?> done = null;
+		try {
+			done = task.run();
+		} catch (RuntimeException e) {
+			LOGGER.error("Event task failed", e);
+		}
+		if (done == null) {
+			executor.execute(this::runNext);
+		} else {
+			done.whenComplete((result, t) -> executor.execute(this::runNext));
+		}
+	}
+}
@@ -1,92 +1,472 @@
 package com.beowulfe.hap.impl.connections;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java8.util.concurrent.CompletableFuture;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
+import com.beowulfe.hap.characteristics.BaseCharacteristic;
+import com.beowulfe.hap.characteristics.EventFilter;
 import com.beowulfe.hap.characteristics.EventableCharacteristic;
 import com.beowulfe.hap.impl.http.HomekitClientConnection;
-import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.json.CharacteristicEvent;
 import com.beowulfe.hap.impl.json.EventController;
 
 public class SubscriptionManager {
 
-	private final static Logger LOGGER = LoggerFactory.getLogger(SubscriptionManager.class);
+	/**
+	 * System property with the time in milliseconds during which changes are collected per connection before they are
+	 * sent together in one event. With 0, the default, every change is sent as soon as it is published.
+	 */
+	public static final String EVENT_WINDOW_PROPERTY = "com.beowulfe.hap.eventWindow";
 	
-	private final ConcurrentMap<EventableCharacteristic, Set<HomekitClientConnection>> subscriptions = new ConcurrentHashMap<>();
-	private final ConcurrentMap<HomekitClientConnection, Set<EventableCharacteristic>> reverse = new ConcurrentHashMap<>();
+	/**
+	 * System property with the number of threads that read changed values and build event messages. An accessory
+	 * whose getters block holds up events of other accessories only once it occupies all of them.
+	 */
+	public static final String EVENT_THREADS_PROPERTY = "com.beowulfe.hap.eventThreads";
 
-	public synchronized void addSubscription(int aid, int iid, EventableCharacteristic characteristic, HomekitClientConnection connection) {
-		synchronized(this) {
-			if (!subscriptions.containsKey(characteristic)) {
-				subscriptions.putIfAbsent(characteristic, newSet());
-			}
-			subscriptions.get(characteristic).add(connection);
-			if (subscriptions.get(characteristic).size() == 1) {
-				characteristic.subscribe(() -> {
-					publish(aid, iid, characteristic);
+	private final static Logger LOGGER = LoggerFactory.getLogger(SubscriptionManager.class);
+	
+	/**
+	 * Only keeps time for event windows and minimum intervals. Everything that may call into an accessory runs on
+	 * {@link #PUBLISHER}.
+	 */
+	private static final ScheduledExecutorService SCHEDULER = createScheduler();
+	private static final Executor PUBLISHER = createPublisher();
+	private static final HomekitClientConnection[] NO_CONNECTIONS = new HomekitClientConnection[0];
+	private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+	
+	/**
+	 * Subscriptions by aid&lt;&lt;32|iid, so they are tied to the position of a characteristic in the registry rather
+	 * than to the object.
+	 */
+	private final ConcurrentMap<Long, Subscription> subscriptions = new ConcurrentHashMap<>();
+	private final ConcurrentMap<HomekitClientConnection, Set<Long>> reverse = new ConcurrentHashMap<>();
+	private final ConcurrentMap<HomekitClientConnection, EventCoalescer> coalescers = new ConcurrentHashMap<>();
+	private final long eventWindow;
+	private final ScheduledExecutorService scheduler;
+	private final Executor publisher;
+	
+	public SubscriptionManager() {
+		this(Math.max(0, Long.getLong(EVENT_WINDOW_PROPERTY, 0)), SCHEDULER, PUBLISHER);
+	}
+	
+	/**
+	 * @param eventWindow time in milliseconds during which changes to a connection are collected, or 0 to send each one
+	 * 	straight away.
+	 * @param scheduler runs the timers, which hand their work to the publisher.
+	 * @param publisher reads changed values and sends the events.
+	 */
+	SubscriptionManager(long eventWindow, ScheduledExecutorService scheduler, Executor publisher) {
+		this.eventWindow = eventWindow;
+		this.scheduler = scheduler;
+		this.publisher = publisher;
+	}
+	
+	private static ScheduledExecutorService createScheduler() {
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "hap-events");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		return scheduler;
+	}
+	
+	private static Executor createPublisher() {
+		int threads = Math.max(1, Integer.getInteger(EVENT_THREADS_PROPERTY, 4));
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "hap-publish-"+threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
 				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	public void addSubscription(int aid, int iid, EventableCharacteristic characteristic, HomekitClientConnection connection) {
+		long key = key(aid, iid);
+		Subscription subscription;
+		while (true) {
+			subscription = subscriptions.get(key);
+			if (subscription == null) {
+				Subscription created = new Subscription(aid, iid);
+				subscription = subscriptions.putIfAbsent(key, created);
+				if (subscription == null) {
+					subscription = created;
+				}
 			}
-			
-			if (!reverse.containsKey(connection)) {
-				reverse.putIfAbsent(connection, newSet());
+			if (subscription.add(characteristic, connection)) {
+				break;
 			}
-			reverse.get(connection).add(characteristic);
-			LOGGER.info("Added subscription to "+characteristic.getClass()+" for "+connection.hashCode());
 		}
+		Set<Long> keys = reverse.get(connection);
+		if (keys == null) {
+			Set<Long> created = newSet();
+			keys = reverse.putIfAbsent(connection, created);
+			if (keys == null) {
+				keys = created;
+			}
+		}
+		keys.add(key);
+		LOGGER.info("Added subscription to "+characteristic.getClass()+" for "+connection.hashCode());
 		try {
-			connection.outOfBand(new EventController().getMessage(aid, iid, characteristic));
+			EventController controller = new EventController();
+			JsonObject state = controller.getState(aid, iid, characteristic);
+			subscription.sent(state.get("value"));
+			connection.outOfBand(controller.getMessage(state));
 		} catch (Exception e) {
 			LOGGER.error("Could not send initial state in response to subscribe event", e);
 		}
 	}
 	
-	public synchronized void removeSubscription(EventableCharacteristic characteristic, HomekitClientConnection connection) {
-		Set<HomekitClientConnection> subscriptions = this.subscriptions.get(characteristic);
-		if (subscriptions != null) {
-			subscriptions.remove(connection);
-			if (subscriptions.size() == 0) {
-				characteristic.unsubscribe();
-			}
+	public void removeSubscription(int aid, int iid, HomekitClientConnection connection) {
+		long key = key(aid, iid);
+		Subscription subscription = subscriptions.get(key);
+		if (subscription != null) {
+			subscription.remove(connection);
 		}
-		
-		Set<EventableCharacteristic> reverse = this.reverse.get(connection);
-		if (reverse != null) {
-			reverse.remove(characteristic);
+		Set<Long> keys = reverse.get(connection);
+		if (keys != null) {
+			keys.remove(key);
 		}
-		LOGGER.info("Removed subscription to "+characteristic.getClass()+" for "+connection.hashCode());
+		LOGGER.info("Removed subscription to "+aid+"."+iid+" for "+connection.hashCode());
 	}
 	
-	public synchronized void removeConnection(HomekitClientConnection connection) {
-		Set<EventableCharacteristic> characteristics = reverse.remove(connection);
-		if (characteristics != null) {
-			for (EventableCharacteristic characteristic: characteristics) {
-				Set<HomekitClientConnection> characteristicSubscriptions = subscriptions.get(characteristic);
-				characteristicSubscriptions.remove(connection);
-				if (characteristicSubscriptions.isEmpty()) {
-					characteristic.unsubscribe();
+	public void removeConnection(HomekitClientConnection connection) {
+		EventCoalescer coalescer = coalescers.remove(connection);
+		if (coalescer != null) {
+			coalescer.cancel();
+		}
+		Set<Long> keys = reverse.remove(connection);
+		if (keys != null) {
+			for (Long key: keys) {
+				Subscription subscription = subscriptions.get(key);
+				if (subscription != null) {
+					subscription.remove(connection);
 				}
 			}
 		}
 	}
 	
+	/**
+	 * Moves the subscriptions to a characteristic to the one that has taken its place in the registry. They are
+	 * dropped if there is none, or if it is of a different kind.
+	 * 
+	 * @param characteristic the characteristic now at the ids, or null if there is none.
+	 */
+	public void replaceCharacteristic(int aid, int iid, EventableCharacteristic characteristic) {
+		long key = key(aid, iid);
+		Subscription subscription = subscriptions.get(key);
+		if (subscription == null) {
+			return;
+		}
+		HomekitClientConnection[] dropped = subscription.replace(characteristic);
+		for (HomekitClientConnection connection: dropped) {
+			Set<Long> keys = reverse.get(connection);
+			if (keys != null) {
+				keys.remove(key);
+			}
+		}
+		if (dropped.length > 0) {
+			LOGGER.info("Removed all subscriptions to "+aid+"."+iid);
+		}
+	}
+	
 	private <T> Set<T> newSet() {
 		return Collections.newSetFromMap(new ConcurrentHashMap<T, Boolean>());
 	}
 	
-	public void publish(int accessoryId, int iid, EventableCharacteristic changed) {
-		try {
-			HttpResponse message = new EventController().getMessage(accessoryId, iid, changed);
-			LOGGER.info("Publishing changes for "+accessoryId);
-			for (HomekitClientConnection connection: subscriptions.get(changed)) {
-				connection.outOfBand(message);
+	private static long key(int aid, int iid) {
+		return (long) aid << 32 | (iid & 0xffffffffL);
+	}
+	
+	public CompletableFuture<Void> publish(int accessoryId, int iid, EventableCharacteristic changed) {
+		return publish(new CharacteristicEvent(accessoryId, iid, changed));
+	}
+	
+	/**
+	 * Sends the change to the connections subscribed to the characteristic, straight away or once their event window
+	 * closes. The message is built once for all connections, from the value carried by the event if it has one.
+	 * 
+	 * If the characteristic has an {@link EventFilter}, the change is compared with the value last published, reading
+	 * the value first if the event does not carry one, and is held back or dropped as the filter decides.
+	 * 
+	 * @return a future that completes once the message has been handed to the connections, or the change has been
+	 * 	held back or dropped.
+	 */
+	public CompletableFuture<Void> publish(CharacteristicEvent event) {
+		Subscription subscription = subscriptions.get(event.getKey());
+		if (subscription == null || subscription.connections.length == 0) {
+			return DONE;
+		}
+		EventFilter filter = event.getCharacteristic() instanceof BaseCharacteristic ?
+				((BaseCharacteristic<?>) event.getCharacteristic()).getEventFilter() : null;
+		if (filter == null) {
+			return dispatch(event, subscription.connections);
+		}
+		return withValue(event).thenCompose(resolved -> subscription.filter(resolved, filter)).exceptionally(t -> {
+			LOGGER.error("Failed to read value of changed characteristic", t);
+			return null;
+		});
+	}
+	
+	private static CompletableFuture<CharacteristicEvent> withValue(CharacteristicEvent event) {
+		if (event.getValue() != null) {
+			return CompletableFuture.completedFuture(event);
+		}
+		return ((BaseCharacteristic<?>) event.getCharacteristic()).supplyJsonValueAsync()
+				.thenApply(value -> new CharacteristicEvent(event.getAccessoryId(), event.getIid(),
+						event.getCharacteristic(), value));
+	}
+	
+	private CompletableFuture<Void> dispatch(CharacteristicEvent event, HomekitClientConnection[] connections) {
+		if (connections.length == 0) {
+			return DONE;
+		}
+		if (eventWindow > 0) {
+			for (HomekitClientConnection connection: connections) {
+				coalescer(connection).add(event);
 			}
-		} catch (Exception e) {
-			LOGGER.error("Failed to create new event message", e);
+			return DONE;
+		}
+		return new EventController().getMessage(Collections.singletonList(event)).thenAccept(message -> {
+			if (message != null) {
+				LOGGER.info("Publishing changes for "+event.getAccessoryId());
+				for (HomekitClientConnection connection: connections) {
+					connection.outOfBand(message);
+				}
+			}
+		}).exceptionally(t -> {
+			LOGGER.error("Failed to create new event message", t);
+			return null;
+		});
+	}
+	
+	private static void invalidate(EventableCharacteristic characteristic) {
+		if (characteristic instanceof BaseCharacteristic) {
+			((BaseCharacteristic<?>) characteristic).invalidateValue();
+		}
+	}
+	
+	private EventCoalescer coalescer(HomekitClientConnection connection) {
+		EventCoalescer coalescer = coalescers.get(connection);
+		if (coalescer == null) {
+			EventCoalescer created = new EventCoalescer(connection, scheduler, publisher, eventWindow);
+			coalescer = coalescers.putIfAbsent(connection, created);
+			if (coalescer == null) {
+				coalescer = created;
+			}
+		}
+		return coalescer;
+	}
+	
+	/**
+	 * The connections subscribed to one characteristic. Publishing reads the array of connections without locking;
+	 * changes replace the array under the subscription's own monitor, so only changes to the same characteristic wait
+	 * for each other. The change callback is registered with the characteristic while there is at least one
+	 * connection.
+	 * 
+	 * It also holds what the characteristic's event filter needs: the value last published or sent to a subscribing
+	 * connection, when, and the latest change held back until the minimum interval has passed.
+	 */
+	private class Subscription {
+		
+		private final int aid;
+		private final int iid;
+		/**
+		 * Publishes the changes of the characteristic one after the other, in the order they were reported.
+		 */
+		private final SerialExecutor serial = new SerialExecutor(publisher);
+		volatile HomekitClientConnection[] connections = NO_CONNECTIONS;
+		private EventableCharacteristic characteristic;
+		/**
+		 * Set once the last connection is gone and the subscription has been taken out of the map.
+		 */
+		private boolean removed = false;
+		private JsonValue published;
+		private long publishedAt;
+		private CharacteristicEvent trailing;
+		private ScheduledFuture<?> trailingDelivery;
+		
+		Subscription(int aid, int iid) {
+			this.aid = aid;
+			this.iid = iid;
+		}
+		
+		/**
+		 * @return false if the subscription has been removed from the map, and a new one has to be made.
+		 */
+		synchronized boolean add(EventableCharacteristic characteristic, HomekitClientConnection connection) {
+			if (removed) {
+				return false;
+			}
+			HomekitClientConnection[] current = connections;
+			for (HomekitClientConnection subscribed: current) {
+				if (subscribed == connection) {
+					return true;
+				}
+			}
+			HomekitClientConnection[] updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = connection;
+			if (current.length == 0) {
+				this.characteristic = characteristic;
+				characteristic.subscribe(callback(characteristic));
+			}
+			connections = updated;
+			return true;
+		}
+		
+		synchronized void remove(HomekitClientConnection connection) {
+			HomekitClientConnection[] current = connections;
+			for (int i = 0; i < current.length; i++) {
+				if (current[i] == connection) {
+					HomekitClientConnection[] updated = new HomekitClientConnection[current.length - 1];
+					System.arraycopy(current, 0, updated, 0, i);
+					System.arraycopy(current, i + 1, updated, i, updated.length - i);
+					connections = updated;
+					if (updated.length == 0) {
+						close();
+					}
+					return;
+				}
+			}
+		}
+		
+		/**
+		 * @return the connections that were dropped.
+		 */
+		synchronized HomekitClientConnection[] replace(EventableCharacteristic replacement) {
+			if (removed || replacement == characteristic) {
+				return NO_CONNECTIONS;
+			}
+			characteristic.unsubscribe();
+			// Controllers keep the value last published, so it still is what the replacement's changes compare with
+			cancelTrailing();
+			if (replacement != null && replacement.getClass() == characteristic.getClass()) {
+				characteristic = replacement;
+				replacement.subscribe(callback(replacement));
+				return NO_CONNECTIONS;
+			}
+			HomekitClientConnection[] dropped = connections;
+			connections = NO_CONNECTIONS;
+			removed = true;
+			subscriptions.remove(key(aid, iid), this);
+			return dropped;
+		}
+		
+		/**
+		 * Publishes the change now, later with the minimum interval, or not at all if it is within the deadband of the
+		 * value last published. A held back change is replaced by later ones, so only the latest value is sent once
+		 * the interval has passed.
+		 */
+		synchronized CompletableFuture<Void> filter(CharacteristicEvent event, EventFilter filter) {
+			if (removed) {
+				return DONE;
+			}
+			if (!filter.isSignificant(published, event.getValue())) {
+				// The value went back to about what controllers have, so a held back change would be stale
+				trailing = null;
+				return DONE;
+			}
+			long wait = published == null ? 0
+					: filter.getMinimumInterval() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - publishedAt);
+			if (wait <= 0) {
+				trailing = null;
+				return deliver(event);
+			} else {
+				trailing = event;
+				if (trailingDelivery == null) {
+					trailingDelivery = scheduler.schedule(() -> serial.execute(this::deliverTrailing), wait,
+							TimeUnit.MILLISECONDS);
+				}
+				return DONE;
+			}
+		}
+		
+		private synchronized CompletableFuture<Void> deliverTrailing() {
+			trailingDelivery = null;
+			if (trailing == null || removed) {
+				return DONE;
+			}
+			CharacteristicEvent event = trailing;
+			trailing = null;
+			return deliver(event);
+		}
+		
+		private CompletableFuture<Void> deliver(CharacteristicEvent event) {
+			published = event.getValue();
+			publishedAt = System.nanoTime();
+			return dispatch(event, connections);
+		}
+		
+		/**
+		 * Records the value a connection was sent when it subscribed, as changes have to be significant with respect
+		 * to it.
+		 * 
+		 * @param value the value sent, or null if there was none.
+		 */
+		synchronized void sent(JsonValue value) {
+			if (value != null && !removed) {
+				published = value;
+				publishedAt = System.nanoTime();
+			}
+		}
+		
+		private void cancelTrailing() {
+			trailing = null;
+			if (trailingDelivery != null) {
+				trailingDelivery.cancel(false);
+				trailingDelivery = null;
+			}
+		}
+		
+		private void close() {
+			cancelTrailing();
+			characteristic.unsubscribe();
+			characteristic = null;
+			removed = true;
+			subscriptions.remove(key(aid, iid), this);
+		}
+		
+		private HomekitCharacteristicChangeCallback callback(EventableCharacteristic characteristic) {
+			return new HomekitCharacteristicChangeCallback() {
+				@Override
+				public void changed() {
+					invalidate(characteristic);
+					serial.execute(() -> publish(aid, iid, characteristic));
+				}
+				
+				@Override
+				public void changed(Object value) {
+					invalidate(characteristic);
+					serial.execute(() -> {
+						JsonValue jsonValue = characteristic instanceof BaseCharacteristic ?
+								((BaseCharacteristic<?>) characteristic).reportValue(value) : null;
+						return publish(new CharacteristicEvent(aid, iid, characteristic, jsonValue));
+					});
+				}
+			};
 		}
 	}
 }
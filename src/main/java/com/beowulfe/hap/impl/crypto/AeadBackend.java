@@ -0,0 +1,28 @@
+package com.beowulfe.hap.impl.crypto;
+
+/**
+ * Provider of the ChaCha20-Poly1305 AEAD used for session frames and for the encrypted pairing messages
+ * (PV-Msg02/03, PS-Msg05/06). Implementations must produce identical output; {@link AeadBackends} checks this with a
+ * known answer test before a backend is used.
+ */
+public interface AeadBackend {
+
+	/**
+	 * @return a short name identifying the backend, as accepted by {@link AeadBackends#BACKEND_PROPERTY}.
+	 */
+	String getName();
+
+	/**
+	 * @return whether the backend can be used in this JVM.
+	 */
+	boolean isAvailable();
+
+	/**
+	 * Creates a cipher bound to the given 256 bit key. The cipher may be reused for any number of nonces.
+	 * 
+	 * @param key the 32 byte key.
+	 * @return the new cipher.
+	 */
+	AeadCipher newCipher(byte[] key);
+
+}
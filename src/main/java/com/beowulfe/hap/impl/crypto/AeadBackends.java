@@ -0,0 +1,169 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bouncycastle.crypto.tls.TlsFatalAlert;
+import org.bouncycastle.util.Pack;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Selects the {@link AeadBackend} used for all ChaCha20-Poly1305 operations. Every candidate must pass a known answer
+ * test; the fastest of the passing backends, measured with a short micro-benchmark, is selected once per JVM. The
+ * choice can be forced with the {@link #BACKEND_PROPERTY} system property.
+ */
+public class AeadBackends {
+
+	/**
+	 * System property naming the backend to use ("jca" or "bouncycastle"). Any other value, or a backend that is
+	 * unavailable or fails the self-test, leaves the choice to the automatic selection.
+	 */
+	public static final String BACKEND_PROPERTY = "com.beowulfe.hap.aead";
+
+	private final static Logger logger = LoggerFactory.getLogger(AeadBackends.class);
+
+	private static final long BENCHMARK_NANOS = 20000000L;
+	private static final int BENCHMARK_SLICE = 8;
+	private static final int BENCHMARK_LENGTH = 1024;
+
+	// Known answer test, cross-checked between the BouncyCastle engine and the JDK 17 cipher
+	private static final byte[] TEST_KEY = Hex.decode("808182838485868788898a8b8c8d8e8f909192939495969798999a9b9c9d9e9f");
+	private static final long TEST_NONCE = Pack.littleEndianToLong("PV-Msg02".getBytes(StandardCharsets.UTF_8), 0);
+	private static final byte[] TEST_AAD = Hex.decode("2a00");
+	private static final byte[] TEST_PLAINTEXT = "HomeKit Accessory Protocol AEAD self-test".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] TEST_SEALED = Hex.decode("3f39a61f26e33a6dc4b6397af07f0af5839cadd6365694eaf65d0d52aa"
+			+ "77f2271991139ba9cddbbdf29a33d5a11d30e64054282aebb4043885");
+
+	private static volatile AeadBackend backend;
+
+	private AeadBackends() { }
+
+	/**
+	 * @return the selected backend, running the selection on first use.
+	 */
+	public static AeadBackend get() {
+		if (backend == null) {
+			synchronized(AeadBackends.class) {
+				if (backend == null) {
+					backend = select(candidates(), System.getProperty(BACKEND_PROPERTY));
+				}
+			}
+		}
+		return backend;
+	}
+
+	/**
+	 * @return the known backends, most preferred first.
+	 */
+	static List<AeadBackend> candidates() {
+		List<AeadBackend> candidates = new ArrayList<>(2);
+		candidates.add(new JcaAeadBackend());
+		candidates.add(new BouncyCastleAeadBackend());
+		return candidates;
+	}
+
+	static AeadBackend select(List<AeadBackend> candidates, String forced) {
+		List<AeadBackend> passing = new ArrayList<>(candidates.size());
+		for (AeadBackend candidate: candidates) {
+			if (!candidate.isAvailable()) {
+				logger.debug("AEAD backend "+candidate.getName()+" is not available");
+			} else if (!selfTest(candidate)) {
+				logger.warn("AEAD backend "+candidate.getName()+" failed its self-test and will not be used");
+			} else {
+				passing.add(candidate);
+			}
+		}
+		if (passing.isEmpty()) {
+			throw new IllegalStateException("No ChaCha20-Poly1305 implementation passed its self-test");
+		}
+		if (forced != null) {
+			for (AeadBackend candidate: passing) {
+				if (candidate.getName().equalsIgnoreCase(forced)) {
+					logger.info("Using AEAD backend "+candidate.getName()+" as configured by "+BACKEND_PROPERTY);
+					return candidate;
+				}
+			}
+			logger.warn("Configured AEAD backend "+forced+" is not usable, selecting automatically");
+		}
+		AeadBackend fastest = passing.size() == 1 ? passing.get(0) : benchmark(passing);
+		logger.info("Using AEAD backend "+fastest.getName());
+		return fastest;
+	}
+
+	static boolean selfTest(AeadBackend candidate) {
+		try {
+			AeadCipher cipher = candidate.newCipher(TEST_KEY);
+			byte[] sealed = new byte[TEST_PLAINTEXT.length + AeadCipher.TAG_LENGTH];
+			cipher.seal(TEST_NONCE, TEST_AAD, 0, TEST_AAD.length, TEST_PLAINTEXT, 0, TEST_PLAINTEXT.length, sealed, 0);
+			if (!Arrays.equals(TEST_SEALED, sealed)) {
+				return false;
+			}
+			// Fresh contexts for each step, as the JDK cipher refuses to reuse a key and nonce pair
+			byte[] opened = new byte[TEST_PLAINTEXT.length];
+			candidate.newCipher(TEST_KEY).open(TEST_NONCE, TEST_AAD, 0, TEST_AAD.length, TEST_SEALED, 0, TEST_SEALED.length, opened, 0);
+			if (!Arrays.equals(TEST_PLAINTEXT, opened)) {
+				return false;
+			}
+			sealed[0] ^= 1;
+			try {
+				candidate.newCipher(TEST_KEY).open(TEST_NONCE, TEST_AAD, 0, TEST_AAD.length, sealed, 0, sealed.length, opened, 0);
+				return false;
+			} catch (TlsFatalAlert e) {
+				return true;
+			}
+		} catch (Exception e) {
+			logger.debug("AEAD backend "+candidate.getName()+" threw during its self-test", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Seals frames with each backend in turn, in short interleaved slices so that the backends share the JIT warm-up
+	 * and any scheduling noise, and compares the fastest slice of each. The probe is far too short for the JIT to reach
+	 * steady state, where the intrinsified JDK cipher is roughly twice as fast, so a backend only displaces a more
+	 * preferred one when it is at least twice as fast. This still rules out a pathologically slow provider.
+	 */
+	private static AeadBackend benchmark(List<AeadBackend> passing) {
+		int count = passing.size();
+		AeadCipher[] ciphers = new AeadCipher[count];
+		long[] best = new long[count];
+		for (int i = 0; i < count; i++) {
+			ciphers[i] = passing.get(i).newCipher(TEST_KEY);
+			best[i] = Long.MAX_VALUE;
+		}
+		byte[] plaintext = new byte[BENCHMARK_LENGTH];
+		byte[] out = new byte[BENCHMARK_LENGTH + AeadCipher.TAG_LENGTH];
+		long nonce = 0;
+		long deadline = System.nanoTime() + BENCHMARK_NANOS;
+		while (System.nanoTime() < deadline) {
+			for (int i = 0; i < count; i++) {
+				if (ciphers[i] == null) {
+					continue;
+				}
+				try {
+					long start = System.nanoTime();
+					for (int frame = 0; frame < BENCHMARK_SLICE; frame++) {
+						ciphers[i].seal(nonce++, TEST_AAD, 0, TEST_AAD.length, plaintext, 0, plaintext.length, out, 0);
+					}
+					best[i] = Math.min(best[i], System.nanoTime() - start);
+				} catch (Exception e) {
+					logger.debug("AEAD backend "+passing.get(i).getName()+" threw during its benchmark", e);
+					ciphers[i] = null;
+					best[i] = Long.MAX_VALUE;
+				}
+			}
+		}
+		int fastest = 0;
+		for (int i = 0; i < count; i++) {
+			logger.debug("AEAD backend "+passing.get(i).getName()+" sealed "+BENCHMARK_SLICE+" frames in "+best[i]+"ns");
+			if (best[i] < Long.MAX_VALUE && (best[fastest] == Long.MAX_VALUE || best[i] * 2 < best[fastest])) {
+				fastest = i;
+			}
+		}
+		return passing.get(fastest);
+	}
+}
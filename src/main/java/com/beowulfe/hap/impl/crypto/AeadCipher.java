@@ -0,0 +1,36 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.io.IOException;
+
+/**
+ * ChaCha20-Poly1305 bound to a single key. The 64 bit nonce is the value HAP places after four zero bytes in the
+ * 96 bit nonce, read as a little endian long: a frame counter for sessions, or the ASCII message label
+ * (such as "PV-Msg02") for pairing.
+ * 
+ * Instances are not thread safe.
+ */
+public interface AeadCipher {
+
+	int TAG_LENGTH = 16;
+
+	/**
+	 * Encrypts the input and appends the authentication tag.
+	 * 
+	 * @return the number of bytes written to out, which is always length + {@link #TAG_LENGTH}.
+	 * @throws IOException if the backend fails to encrypt.
+	 */
+	int seal(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+			byte[] out, int outOffset) throws IOException;
+
+	/**
+	 * Verifies the authentication tag trailing the ciphertext and decrypts it. The output may overlap the input
+	 * at the same offset.
+	 * 
+	 * @param length the length of the ciphertext including the trailing tag.
+	 * @return the number of plaintext bytes written to out.
+	 * @throws IOException if the input fails authentication.
+	 */
+	int open(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+			byte[] out, int outOffset) throws IOException;
+
+}
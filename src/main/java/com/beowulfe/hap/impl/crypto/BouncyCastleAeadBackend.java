@@ -0,0 +1,85 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.io.IOException;
+
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+import org.bouncycastle.crypto.tls.AlertDescription;
+import org.bouncycastle.crypto.tls.TlsFatalAlert;
+
+/**
+ * Pure Java backend built from the BouncyCastle ChaCha engine and Poly1305 MAC. Always available.
+ */
+class BouncyCastleAeadBackend implements AeadBackend {
+
+	static final String NAME = "bouncycastle";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isAvailable() {
+		return true;
+	}
+
+	@Override
+	public AeadCipher newCipher(byte[] key) {
+		return new BouncyCastleAeadCipher(key);
+	}
+
+	private static final class BouncyCastleAeadCipher implements AeadCipher {
+
+		private static final byte[] ZEROS = new byte[64];
+
+		private final NonceChaChaEngine cipher;
+		private final Poly1305Tag tag = new Poly1305Tag();
+		private final byte[] firstBlock = new byte[64];
+		private final byte[] calculatedMac = new byte[TAG_LENGTH];
+
+		BouncyCastleAeadCipher(byte[] key) {
+			cipher = new NonceChaChaEngine();
+			cipher.init(true, new ParametersWithIV(new KeyParameter(key), new byte[8]));
+		}
+
+		@Override
+		public int seal(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+				byte[] out, int outOffset) {
+			initRecordMAC(nonce);
+			cipher.processBytes(in, inOffset, length, out, outOffset);
+			tag.compute(aad, aadOffset, aadLength, out, outOffset, length, out, outOffset + length);
+			return length + TAG_LENGTH;
+		}
+
+		@Override
+		public int open(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+				byte[] out, int outOffset) throws IOException {
+			int ciphertextLength = length - TAG_LENGTH;
+			if (ciphertextLength < 0) {
+				throw new TlsFatalAlert(AlertDescription.decode_error);
+			}
+			initRecordMAC(nonce);
+			tag.compute(aad, aadOffset, aadLength, in, inOffset, ciphertextLength, calculatedMac, 0);
+			if (!constantTimeAreEqual(calculatedMac, in, inOffset + ciphertextLength)) {
+				throw new TlsFatalAlert(AlertDescription.bad_record_mac);
+			}
+			cipher.processBytes(in, inOffset, ciphertextLength, out, outOffset);
+			return ciphertextLength;
+		}
+
+		private void initRecordMAC(long nonce) {
+			cipher.setNonce(nonce);
+			cipher.processBytes(ZEROS, 0, firstBlock.length, firstBlock, 0);
+			tag.init(firstBlock, 0);
+		}
+
+		private static boolean constantTimeAreEqual(byte[] expected, byte[] actual, int offset) {
+			int diff = 0;
+			for (int i=0; i<expected.length; i++) {
+				diff |= expected[i] ^ actual[offset + i];
+			}
+			return diff == 0;
+		}
+	}
+}
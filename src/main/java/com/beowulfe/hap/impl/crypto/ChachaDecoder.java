@@ -2,43 +2,28 @@ package com.beowulfe.hap.impl.crypto;
 
 import java.io.IOException;
 
-import org.bouncycastle.crypto.engines.ChaChaEngine;
-import org.bouncycastle.crypto.generators.Poly1305KeyGenerator;
-import org.bouncycastle.crypto.params.KeyParameter;
-import org.bouncycastle.crypto.params.ParametersWithIV;
-import org.bouncycastle.crypto.tls.AlertDescription;
-import org.bouncycastle.crypto.tls.TlsFatalAlert;
-import org.bouncycastle.util.Arrays;
+import org.bouncycastle.util.Pack;
 
 public class ChachaDecoder {
 
-    private final ChaChaEngine decryptCipher;
+	private final AeadCipher cipher;
+	private final long nonce;
     
 	public ChachaDecoder(byte[] key, byte[] nonce) throws IOException {
-		
-        this.decryptCipher = new ChaChaEngine(20);
-        
-        this.decryptCipher.init(false, new ParametersWithIV(new KeyParameter(key), nonce));
-        
-        
+		this.cipher = AeadBackends.get().newCipher(key);
+		this.nonce = Pack.littleEndianToLong(nonce, 0);
 	}
 
 	public byte[] decodeCiphertext(byte[] receivedMAC, byte[] additionalData, byte[] ciphertext)
 			throws IOException {
-
-        KeyParameter macKey = initRecordMAC(decryptCipher);
-
-        byte[] calculatedMAC = PolyKeyCreator.create(macKey, additionalData, ciphertext);
-
-        if (!Arrays.constantTimeAreEqual(calculatedMAC, receivedMAC))
-        {
-            throw new TlsFatalAlert(AlertDescription.bad_record_mac);
-        }
-
-        byte[] output = new byte[ciphertext.length];
-        decryptCipher.processBytes(ciphertext, 0, ciphertext.length, output, 0);
-
-        return output;
+		byte[] sealed = new byte[ciphertext.length + receivedMAC.length];
+		System.arraycopy(ciphertext, 0, sealed, 0, ciphertext.length);
+		System.arraycopy(receivedMAC, 0, sealed, ciphertext.length, receivedMAC.length);
+		cipher.open(nonce, additionalData, 0, additionalData == null ? 0 : additionalData.length,
+				sealed, 0, sealed.length, sealed, 0);
+		byte[] output = new byte[ciphertext.length];
+		System.arraycopy(sealed, 0, output, 0, output.length);
+		return output;
     }
 	
 	public byte[] decodeCiphertext(byte[] receivedMAC, byte[] ciphertext) throws IOException
@@ -46,16 +31,4 @@ public class ChachaDecoder {
 		return decodeCiphertext(receivedMAC,  null, ciphertext);
     }
 	
-	private KeyParameter initRecordMAC(ChaChaEngine cipher)
-    {
-        byte[] firstBlock = new byte[64];
-        cipher.processBytes(firstBlock, 0, firstBlock.length, firstBlock, 0);
-
-        // NOTE: The BC implementation puts 'r' after 'k'
-        System.arraycopy(firstBlock, 0, firstBlock, 32, 16);
-        KeyParameter macKey = new KeyParameter(firstBlock, 16, 32);
-        Poly1305KeyGenerator.clamp(macKey.getKey());
-        return macKey;
-    }
-	
 }
@@ -0,0 +1,60 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.security.SecureRandom;
+
+import djb.Curve25519;
+
+/**
+ * Curve25519 key pairs for the ephemeral keys of pair-verify, generated ahead of use. Every pair is handed out exactly
+ * once.
+ */
+public class EphemeralKeyPool extends PrecomputedPool<EphemeralKeyPool.KeyPair> {
+
+	private static volatile SecureRandom secureRandom;
+
+	/**
+	 * @param size number of key pairs to keep ready. Zero disables the pool, so every pair is generated on demand.
+	 */
+	public EphemeralKeyPool(int size) {
+		super(size);
+	}
+
+	@Override
+	protected KeyPair generate() {
+		byte[] publicKey = new byte[32];
+		byte[] privateKey = new byte[32];
+		getSecureRandom().nextBytes(privateKey);
+		Curve25519.keygen(publicKey, null, privateKey);
+		return new KeyPair(publicKey, privateKey);
+	}
+
+	private static SecureRandom getSecureRandom() {
+		if (secureRandom == null) {
+			synchronized(EphemeralKeyPool.class) {
+				if (secureRandom == null) {
+					secureRandom = new SecureRandom();
+				}
+			}
+		}
+		return secureRandom;
+	}
+
+	public static class KeyPair {
+
+		private final byte[] publicKey;
+		private final byte[] privateKey;
+
+		KeyPair(byte[] publicKey, byte[] privateKey) {
+			this.publicKey = publicKey;
+			this.privateKey = privateKey;
+		}
+
+		public byte[] getPublicKey() {
+			return publicKey;
+		}
+
+		public byte[] getPrivateKey() {
+			return privateKey;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.crypto.tls.AlertDescription;
+import org.bouncycastle.crypto.tls.TlsFatalAlert;
+import org.bouncycastle.util.Pack;
+
+/**
+ * Backend using the JDK's "ChaCha20-Poly1305" cipher, available from Java 11. The JDK implementation is intrinsified
+ * on common platforms and considerably faster than the pure Java engine.
+ *
+ * Unlike the other backends, each frame allocates an {@link IvParameterSpec}: a JCA cipher only takes a new nonce
+ * through {@link Cipher#init}, and the spec copies the nonce when it is constructed, so it cannot be reused.
+ */
+class JcaAeadBackend implements AeadBackend {
+
+	static final String NAME = "jca";
+
+	private static final String TRANSFORMATION = "ChaCha20-Poly1305";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public boolean isAvailable() {
+		try {
+			Cipher.getInstance(TRANSFORMATION);
+			return true;
+		} catch (GeneralSecurityException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public AeadCipher newCipher(byte[] key) {
+		try {
+			return new JcaAeadCipher(key);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(TRANSFORMATION+" is not available", e);
+		}
+	}
+
+	private static final class JcaAeadCipher implements AeadCipher {
+
+		// Separate instances, as the JDK refuses to re-initialize a cipher with the key and nonce it last encrypted with
+		private final Cipher encrypter;
+		private final Cipher decrypter;
+		private final SecretKeySpec key;
+		private final byte[] iv = new byte[12];
+
+		JcaAeadCipher(byte[] key) throws GeneralSecurityException {
+			this.encrypter = Cipher.getInstance(TRANSFORMATION);
+			this.decrypter = Cipher.getInstance(TRANSFORMATION);
+			this.key = new SecretKeySpec(key, "ChaCha20");
+		}
+
+		@Override
+		public int seal(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+				byte[] out, int outOffset) throws IOException {
+			try {
+				init(encrypter, Cipher.ENCRYPT_MODE, nonce, aad, aadOffset, aadLength);
+				return encrypter.doFinal(in, inOffset, length, out, outOffset);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("Could not encrypt", e);
+			}
+		}
+
+		@Override
+		public int open(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+				byte[] out, int outOffset) throws IOException {
+			if (length < TAG_LENGTH) {
+				throw new TlsFatalAlert(AlertDescription.decode_error);
+			}
+			try {
+				init(decrypter, Cipher.DECRYPT_MODE, nonce, aad, aadOffset, aadLength);
+				return decrypter.doFinal(in, inOffset, length, out, outOffset);
+			} catch (AEADBadTagException e) {
+				throw new TlsFatalAlert(AlertDescription.bad_record_mac);
+			} catch (GeneralSecurityException e) {
+				throw new IOException("Could not decrypt", e);
+			}
+		}
+
+		private void init(Cipher cipher, int mode, long nonce, byte[] aad, int aadOffset, int aadLength) throws GeneralSecurityException {
+			Pack.longToLittleEndian(nonce, iv, 4);
+			// The spec is immutable, so a new one is needed for every nonce
+			cipher.init(mode, key, new IvParameterSpec(iv));
+			if (aadLength > 0) {
+				cipher.updateAAD(aad, aadOffset, aadLength);
+			}
+		}
+	}
+}
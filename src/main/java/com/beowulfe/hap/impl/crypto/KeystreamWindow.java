@@ -0,0 +1,92 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.util.Arrays;
+
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.crypto.params.ParametersWithIV;
+
+/**
+ * Keystream and one-time Poly1305 keys computed ahead of time for the next nonces of a {@link SessionCipher}. Sealing
+ * a frame of up to {@link #PRECOMPUTED_LENGTH} bytes whose nonce is in the window is then an XOR plus Poly1305.
+ *
+ * The output is identical to every {@link AeadBackend}, so the window can be combined with whichever is selected. Each
+ * slot is wiped as soon as its nonce has been used or skipped.
+ */
+final class KeystreamWindow {
+
+	/**
+	 * Longest plaintext sealed from the window. Sized for EVENT/1.0 notifications, which are a couple of hundred
+	 * bytes; longer frames are sealed by the regular cipher.
+	 */
+	static final int PRECOMPUTED_LENGTH = 256;
+
+	private static final int BLOCK_LENGTH = 64;
+	private static final byte[] ZEROS = new byte[BLOCK_LENGTH + PRECOMPUTED_LENGTH];
+
+	private final NonceChaChaEngine engine = new NonceChaChaEngine();
+	private final Poly1305Tag tag = new Poly1305Tag();
+	private final byte[][] slots;
+	private long first = 0;
+	private int held = 0;
+
+	KeystreamWindow(byte[] key, int frames) {
+		engine.init(true, new ParametersWithIV(new KeyParameter(key), new byte[8]));
+		slots = new byte[frames][BLOCK_LENGTH + PRECOMPUTED_LENGTH];
+	}
+
+	/**
+	 * Fills the window for the nonces following next, discarding any before it.
+	 *
+	 * @param next the next nonce that will be sealed.
+	 * @return the number of slots computed.
+	 */
+	int fill(long next) {
+		discardBefore(next);
+		if (held == 0) {
+			first = next;
+		}
+		int computed = 0;
+		while (held < slots.length) {
+			long nonce = first + held;
+			engine.setNonce(nonce);
+			engine.processBytes(ZEROS, 0, ZEROS.length, slot(nonce), 0);
+			held++;
+			computed++;
+		}
+		return computed;
+	}
+
+	/**
+	 * Seals the frame from the window if its nonce has been precomputed and it is short enough.
+	 *
+	 * @return the number of bytes written, length + {@link AeadCipher#TAG_LENGTH}, or -1 if the caller has to seal the
+	 * 	frame itself.
+	 */
+	int seal(long nonce, byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+			byte[] out, int outOffset) {
+		discardBefore(nonce);
+		if (held == 0 || first != nonce || length > PRECOMPUTED_LENGTH) {
+			return -1;
+		}
+		byte[] slot = slot(nonce);
+		for (int i = 0; i < length; i++) {
+			out[outOffset + i] = (byte) (in[inOffset + i] ^ slot[BLOCK_LENGTH + i]);
+		}
+		tag.init(slot, 0);
+		tag.compute(aad, aadOffset, aadLength, out, outOffset, length, out, outOffset + length);
+		discardBefore(nonce + 1);
+		return length + AeadCipher.TAG_LENGTH;
+	}
+
+	private void discardBefore(long nonce) {
+		while (held > 0 && first < nonce) {
+			Arrays.fill(slot(first), (byte) 0);
+			first++;
+			held--;
+		}
+	}
+
+	private byte[] slot(long nonce) {
+		return slots[(int) (nonce % slots.length)];
+	}
+}
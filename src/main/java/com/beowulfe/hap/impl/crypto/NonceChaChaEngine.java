@@ -0,0 +1,15 @@
+package com.beowulfe.hap.impl.crypto;
+
+import org.bouncycastle.crypto.engines.ChaChaEngine;
+
+/**
+ * Exposes the nonce words of the engine state so the nonce can be replaced without a new key schedule.
+ */
+final class NonceChaChaEngine extends ChaChaEngine {
+
+	void setNonce(long nonce) {
+		engineState[14] = (int) nonce;
+		engineState[15] = (int) (nonce >>> 32);
+		reset();
+	}
+}
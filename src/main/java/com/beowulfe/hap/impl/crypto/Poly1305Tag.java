@@ -0,0 +1,55 @@
+package com.beowulfe.hap.impl.crypto;
+
+import org.bouncycastle.crypto.generators.Poly1305KeyGenerator;
+import org.bouncycastle.crypto.macs.Poly1305;
+import org.bouncycastle.crypto.params.KeyParameter;
+import org.bouncycastle.util.Pack;
+
+/**
+ * Computes the ChaCha20-Poly1305 authentication tag over the AAD and ciphertext, keyed from the first 32 bytes of the
+ * ChaCha20 block at counter zero. Reusable across nonces; not thread safe.
+ */
+final class Poly1305Tag {
+
+	private static final byte[] ZEROS = new byte[16];
+
+	private final Poly1305 mac = new Poly1305();
+	private final KeyParameter macKey = new KeyParameter(new byte[32]);
+	private final byte[] lengthBlock = new byte[16];
+
+	/**
+	 * @param firstBlock buffer holding the keystream block for counter zero.
+	 * @param offset position of the block in firstBlock.
+	 */
+	void init(byte[] firstBlock, int offset) {
+		// NOTE: The BC implementation puts 'r' after 'k'
+		byte[] key = macKey.getKey();
+		System.arraycopy(firstBlock, offset + 16, key, 0, 16);
+		System.arraycopy(firstBlock, offset, key, 16, 16);
+		Poly1305KeyGenerator.clamp(key);
+		mac.init(macKey);
+	}
+
+	/**
+	 * Writes the {@link AeadCipher#TAG_LENGTH} byte tag for the given AAD and ciphertext.
+	 */
+	void compute(byte[] aad, int aadOffset, int aadLength, byte[] ciphertext, int offset, int length,
+			byte[] tag, int tagOffset) {
+		if (aadLength > 0) {
+			mac.update(aad, aadOffset, aadLength);
+			pad(aadLength);
+		}
+		mac.update(ciphertext, offset, length);
+		pad(length);
+		Pack.longToLittleEndian(aadLength, lengthBlock, 0);
+		Pack.longToLittleEndian(length, lengthBlock, 8);
+		mac.update(lengthBlock, 0, lengthBlock.length);
+		mac.doFinal(tag, tagOffset);
+	}
+
+	private void pad(int length) {
+		if (length % 16 != 0) {
+			mac.update(ZEROS, 0, 16 - (length % 16));
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Values that are expensive to generate and used exactly once, generated on a background thread ahead of use. When
+ * the pool is empty a value is generated on the calling thread instead.
+ *
+ * @param <T> the pooled value.
+ */
+public abstract class PrecomputedPool<T> {
+
+	private static final Executor refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "hap-precompute");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final BlockingQueue<T> pool;
+	private final AtomicBoolean refilling = new AtomicBoolean(false);
+
+	/**
+	 * @param size number of values to keep ready. Zero disables the pool, so every value is generated on demand.
+	 */
+	protected PrecomputedPool(int size) {
+		pool = size > 0 ? new ArrayBlockingQueue<T>(size) : null;
+		refill();
+	}
+
+	/**
+	 * @return a value that has not been handed out before.
+	 */
+	public T take() {
+		T value = pool != null ? pool.poll() : null;
+		if (value == null) {
+			value = generate();
+		}
+		refill();
+		return value;
+	}
+
+	/**
+	 * Generates a new value. Called on the background thread as soon as the pool is constructed, so implementations
+	 * must not rely on state initialized by a subclass constructor.
+	 */
+	protected abstract T generate();
+
+	private void refill() {
+		if (pool != null && refilling.compareAndSet(false, true)) {
+			refillExecutor.execute(() -> {
+				try {
+					while (pool.remainingCapacity() > 0) {
+						pool.offer(generate());
+					}
+				} finally {
+					refilling.set(false);
+				}
+			});
+		}
+	}
+}
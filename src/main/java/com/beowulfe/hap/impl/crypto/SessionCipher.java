@@ -0,0 +1,92 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.io.IOException;
+
+/**
+ * ChaCha20-Poly1305 context for one direction of an upgraded session. The cipher is set up once when the session keys
+ * are installed; each frame only advances the nonce counter. Frames are sealed and opened into caller supplied buffers
+ * so that no per-frame allocation takes place, apart from the nonce parameter the JDK backend has to pass to
+ * {@link javax.crypto.Cipher#init}.
+ *
+ * Instances are not thread safe. A connection reads and writes each direction from a single thread.
+ */
+public class SessionCipher {
+
+	public static final int TAG_LENGTH = AeadCipher.TAG_LENGTH;
+
+	/**
+	 * System property giving the number of outbound frames to precompute keystream for on each connection. Unset or
+	 * zero disables precomputation.
+	 */
+	public static final String PRECOMPUTE_PROPERTY = "com.beowulfe.hap.precomputeFrames";
+
+	private final AeadCipher cipher;
+	private final KeystreamWindow window;
+	private long counter = 0;
+
+	public SessionCipher(byte[] key) {
+		this(AeadBackends.get(), key, 0);
+	}
+
+	public SessionCipher(AeadBackend backend, byte[] key) {
+		this(backend, key, 0);
+	}
+
+	/**
+	 * @param precomputeFrames number of upcoming nonces to keep keystream ready for, see {@link #precompute()}. Zero
+	 * 	disables precomputation.
+	 */
+	public SessionCipher(AeadBackend backend, byte[] key, int precomputeFrames) {
+		this.cipher = backend.newCipher(key);
+		this.window = precomputeFrames > 0 ? new KeystreamWindow(key, precomputeFrames) : null;
+	}
+
+	/**
+	 * Encrypts a frame and appends the authentication tag.
+	 *
+	 * @return the number of bytes written to out, which is always length + {@link #TAG_LENGTH}.
+	 * @throws IOException if the backend fails to encrypt.
+	 */
+	public int seal(byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+			byte[] out, int outOffset) throws IOException {
+		long nonce = counter++;
+		if (window != null) {
+			int written = window.seal(nonce, aad, aadOffset, aadLength, in, inOffset, length, out, outOffset);
+			if (written >= 0) {
+				return written;
+			}
+		}
+		return cipher.seal(nonce, aad, aadOffset, aadLength, in, inOffset, length, out, outOffset);
+	}
+
+	/**
+	 * Computes the keystream and one-time MAC keys for the next nonces, so that sealing a short frame such as an event
+	 * notification is reduced to an XOR and a Poly1305 pass. Meant to be called while the connection is otherwise idle.
+	 *
+	 * @return whether any work was done. Always false when precomputation is disabled.
+	 */
+	public boolean precompute() {
+		return window != null && window.fill(counter) > 0;
+	}
+
+	/**
+	 * @return whether keystream is precomputed for this cipher, so that calling {@link #precompute()} has any effect.
+	 */
+	public boolean isPrecomputing() {
+		return window != null;
+	}
+
+	/**
+	 * Verifies the authentication tag trailing the ciphertext and decrypts it. The output may overlap the input
+	 * at the same offset.
+	 *
+	 * @param length the length of the ciphertext including the trailing tag.
+	 * @return the number of plaintext bytes written to out.
+	 * @throws IOException if the frame fails authentication
+	 */
+	public int open(byte[] aad, int aadOffset, int aadLength, byte[] in, int inOffset, int length,
+			byte[] out, int outOffset) throws IOException {
+		return cipher.open(counter++, aad, aadOffset, aadLength, in, inOffset, length, out, outOffset);
+	}
+
+}
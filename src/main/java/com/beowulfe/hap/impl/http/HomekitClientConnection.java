@@ -4,11 +4,55 @@ import java.io.IOException;
 
 public interface HomekitClientConnection {
 
+	/**
+	 * Largest plaintext carried by a single encrypted frame.
+	 */
+	int MAX_FRAME_LENGTH = 0x400;
+	
+	/**
+	 * Bytes added to each frame's plaintext: the two byte little endian length prefix and the authentication tag.
+	 */
+	int FRAME_OVERHEAD = 2 + 16;
+
 	HttpResponse handleRequest(HttpRequest request) throws IOException;
 
-	byte[] decryptRequest(byte[] ciphertext);
+	/**
+	 * Authenticates and decrypts a single frame received on an upgraded connection.
+	 * 
+	 * @param frame buffer holding the length prefix, ciphertext and authentication tag of the frame.
+	 * @param offset position of the length prefix in frame.
+	 * @param length the length of the complete frame, including {@link #FRAME_OVERHEAD}.
+	 * @param out buffer receiving the plaintext, which may be frame itself.
+	 * @param outOffset position in out to write the plaintext to.
+	 * @return the number of plaintext bytes written.
+	 * @throws IOException if the frame cannot be authenticated.
+	 */
+	int decryptFrame(byte[] frame, int offset, int length, byte[] out, int outOffset) throws IOException;
+	
+	/**
+	 * Encrypts up to {@link #MAX_FRAME_LENGTH} bytes of plaintext into a single frame.
+	 * 
+	 * @param plaintext buffer holding the plaintext.
+	 * @param offset position of the plaintext.
+	 * @param length number of plaintext bytes, no more than {@link #MAX_FRAME_LENGTH}.
+	 * @param out buffer receiving the frame, with room for length + {@link #FRAME_OVERHEAD} bytes.
+	 * @param outOffset position in out to write the frame to.
+	 * @return the number of bytes written.
+	 * @throws IOException if the connection has not been upgraded.
+	 */
+	int encryptFrame(byte[] plaintext, int offset, int length, byte[] out, int outOffset) throws IOException;
+
+	/**
+	 * Prepares for upcoming outbound frames while the connection is idle. Called on the thread that calls
+	 * {@link #encryptFrame(byte[], int, int, byte[], int) encryptFrame}.
+	 */
+	void precomputeOutbound();
 	
-	byte[] encryptResponse(byte[] plaintext) throws IOException;
+	/**
+	 * @return whether {@link #precomputeOutbound()} does any work on this connection. When it does not, the caller
+	 * 	need not schedule it at all.
+	 */
+	boolean isPrecomputingOutbound();
 	
 	void close();
 
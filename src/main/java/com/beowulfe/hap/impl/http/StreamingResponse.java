@@ -0,0 +1,21 @@
+package com.beowulfe.hap.impl.http;
+
+import java.io.OutputStream;
+
+import java8.util.concurrent.CompletableFuture;
+
+/**
+ * A response whose body is written while it is being generated, and sent with chunked transfer encoding instead of a
+ * Content-Length. {@link #getBody()} is not used.
+ */
+public interface StreamingResponse extends HttpResponse {
+
+	/**
+	 * Writes the body to out. Every flush of out sends what has been written since the previous one, and closing out
+	 * ends the body. The body may be written from any thread, but not from several at once.
+	 * 
+	 * @param out the stream receiving the body.
+	 * @return a future completing once out has been closed, or exceptionally if the body could not be written.
+	 */
+	CompletableFuture<Void> writeBody(OutputStream out);
+}
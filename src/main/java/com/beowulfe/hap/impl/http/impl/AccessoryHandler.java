@@ -2,7 +2,10 @@ package com.beowulfe.hap.impl.http.impl;
 
 import com.beowulfe.hap.impl.http.HomekitClientConnection;
 import com.beowulfe.hap.impl.http.HomekitClientConnectionFactory;
+import com.beowulfe.hap.impl.http.HttpRequest;
 import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.http.StreamingResponse;
+import com.beowulfe.hap.impl.pairing.BusyResponse;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
@@ -14,6 +17,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+import java8.util.concurrent.CompletionException;
 
 class AccessoryHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 
@@ -21,22 +26,34 @@ class AccessoryHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 	
 	private HomekitClientConnection connection;
 	private final HomekitClientConnectionFactory homekitClientConnectionFactory;
+	private final PairingExecutor pairingExecutor;
+	private final OutboundEventStats eventStats;
+	private OutboundEventQueue events;
 	
-	public AccessoryHandler(HomekitClientConnectionFactory homekitClientConnectionFactory) {
+	public AccessoryHandler(HomekitClientConnectionFactory homekitClientConnectionFactory,
+			PairingExecutor pairingExecutor, OutboundEventStats eventStats) {
 		this.homekitClientConnectionFactory = homekitClientConnectionFactory;
+		this.pairingExecutor = pairingExecutor;
+		this.eventStats = eventStats;
 	}
 	
 	@Override
 	public void channelActive(ChannelHandlerContext ctx) throws Exception {
 		final Channel channel = ctx.pipeline().channel();
-		this.connection = homekitClientConnectionFactory.createConnection(response -> {
-			if (!channel.isActive()) { return; }
-			channel.writeAndFlush(NettyResponseUtil.createResponse(response));
-		});
+		events = new OutboundEventQueue(channel, eventStats);
+		this.connection = homekitClientConnectionFactory.createConnection(events::offer);
 		LOGGER.info("New homekit connection from "+ctx.channel().remoteAddress().toString());
 		super.channelActive(ctx);
 	}
 	
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		if (events != null) {
+			events.drain();
+		}
+		super.channelWritabilityChanged(ctx);
+	}
+	
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) throws Exception {
 		LOGGER.info("Terminated homekit connection from "+ctx.channel().remoteAddress().toString());
@@ -46,13 +63,37 @@ class AccessoryHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 	@Override
 	public void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req)
 			throws Exception {
+		HttpRequest request = new FullRequestHttpRequestImpl(req);
+		if (pairingExecutor.handles(request.getUri())) {
+			try {
+				pairingExecutor.execute(() -> handleRequest(ctx, request));
+			} catch (RejectedExecutionException e) {
+				LOGGER.warn("Pairing queue full with "+pairingExecutor.getQueueDepth()+" requests, rejecting "
+						+request.getUri()+" from "+ctx.channel().remoteAddress());
+				sendResponse(new BusyResponse(request.getBody()), ctx);
+			}
+		} else {
+			handleRequest(ctx, request);
+		}
+	}
+	
+	private void handleRequest(ChannelHandlerContext ctx, HttpRequest request) {
 		try {
-			HttpResponse response = connection.handleRequest(new FullRequestHttpRequestImpl(req));
+			HttpResponse response = connection.handleRequest(request);
 			if (response.doUpgrade()) {
 				ChannelPipeline pipeline = ctx.channel().pipeline();
-				pipeline.addBefore(ServerInitializer.HTTP_HANDLER_NAME, "binary", new BinaryHandler(connection));
+				pipeline.addBefore(ServerInitializer.HTTP_HANDLER_NAME, "frameDecoder", new EncryptedFrameDecoder(connection));
+				// The upgrade response itself goes out in plaintext, everything after it is encrypted
+				ctx.writeAndFlush(NettyResponseUtil.createResponse(response)).addListener(future -> {
+					if (future.isSuccess()) {
+						pipeline.addBefore(ServerInitializer.HTTP_HANDLER_NAME, "frameEncoder", new EncryptedFrameEncoder(connection));
+					}
+				});
+			} else if (response instanceof StreamingResponse) {
+				sendResponse((StreamingResponse) response, ctx);
+			} else {
+				sendResponse(response, ctx);
 			}
-			sendResponse(response, ctx);
 		} catch (Exception e) {
 			LOGGER.error("Error handling homekit http request", e);
 			sendResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR, "Error: "+e.getMessage(), ctx);
@@ -78,6 +119,23 @@ class AccessoryHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
 		ctx.flush();
 	}
 	
+	/**
+	 * Sends the body as it is written. Waits for it to be complete, so that the response to the next request on the
+	 * connection cannot be sent in the middle of it.
+	 */
+	private void sendResponse(StreamingResponse homekitResponse, ChannelHandlerContext ctx) {
+		ctx.writeAndFlush(NettyResponseUtil.createChunkedResponse(homekitResponse));
+		ChunkedBodyOutputStream out = new ChunkedBodyOutputStream(ctx);
+		try {
+			homekitResponse.writeBody(out).join();
+		} catch (CompletionException e) {
+			// The status line has been sent, so the only way left to signal the failure is to drop the connection
+			LOGGER.error("Error writing homekit http response", e.getCause());
+			out.discard();
+			ctx.close();
+		}
+	}
+	
 	@Override
 	public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
 		ctx.flush();
@@ -0,0 +1,73 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.io.OutputStream;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+
+/**
+ * Collects the body of a {@link com.beowulfe.hap.impl.http.StreamingResponse} in pooled buffers, and writes each as an
+ * HTTP chunk when the stream is flushed. Closing the stream writes the last chunk.
+ */
+class ChunkedBodyOutputStream extends OutputStream {
+
+	private static final int INITIAL_CAPACITY = 4096;
+
+	private final ChannelHandlerContext ctx;
+	private ByteBuf buffer;
+	private boolean closed = false;
+
+	ChunkedBodyOutputStream(ChannelHandlerContext ctx) {
+		this.ctx = ctx;
+	}
+
+	@Override
+	public void write(int b) {
+		buffer().writeByte(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		buffer().writeBytes(b, off, len);
+	}
+
+	@Override
+	public void flush() {
+		if (buffer != null && buffer.isReadable()) {
+			ctx.writeAndFlush(new DefaultHttpContent(buffer));
+			buffer = null;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (!closed) {
+			flush();
+			discard();
+			ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+		}
+	}
+
+	/**
+	 * Releases anything written since the last flush, and ends the stream without completing the body.
+	 */
+	void discard() {
+		closed = true;
+		if (buffer != null) {
+			buffer.release();
+			buffer = null;
+		}
+	}
+
+	private ByteBuf buffer() {
+		if (closed) {
+			throw new IllegalStateException("Stream is closed");
+		}
+		if (buffer == null) {
+			buffer = ctx.alloc().heapBuffer(INITIAL_CAPACITY);
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,87 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+/**
+ * Decrypts the frames of an upgraded connection into a single pooled buffer per read. Frames are delimited by a
+ * {@link FrameReassembler}, so complete frames are decrypted straight from the inbound buffer.
+ */
+class EncryptedFrameDecoder extends ChannelInboundHandlerAdapter implements FrameReassembler.FrameHandler {
+
+	private final static Logger logger = LoggerFactory.getLogger(EncryptedFrameDecoder.class);
+
+	private final HomekitClientConnection connection;
+	private final FrameReassembler reassembler = new FrameReassembler();
+	private ByteBuf decrypted;
+
+	public EncryptedFrameDecoder(HomekitClientConnection connection) {
+		this.connection = connection;
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+		if (!(msg instanceof ByteBuf)) {
+			ctx.fireChannelRead(msg);
+			return;
+		}
+		ByteBuf in = (ByteBuf) msg;
+		ByteBuf out;
+		try {
+			// The plaintext is never longer than the frames it arrived in
+			out = decrypted = ctx.alloc().heapBuffer(reassembler.buffered() + in.readableBytes());
+			try {
+				reassembler.reassemble(in, this);
+			} catch (Exception e) {
+				out.release();
+				throw e;
+			} finally {
+				decrypted = null;
+			}
+		} finally {
+			in.release();
+		}
+		if (out.isReadable()) {
+			traceData("Received data", out, ctx);
+			ctx.fireChannelRead(out);
+		} else {
+			out.release();
+		}
+	}
+
+	@Override
+	public void handleFrame(byte[] frame, int offset, int length) throws IOException {
+		int written = connection.decryptFrame(frame, offset, length,
+				decrypted.array(), decrypted.arrayOffset() + decrypted.writerIndex());
+		decrypted.writerIndex(decrypted.writerIndex() + written);
+	}
+	
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause)
+			throws Exception {
+		boolean errorLevel = !(cause instanceof IOException);
+		if (errorLevel) {
+			logger.error("Exception in encrypted frame decoder", cause);
+		} else {
+			logger.debug("Exception in encrypted frame decoder", cause);
+		}
+		super.exceptionCaught(ctx, cause);
+	}
+
+	static void traceData(String msg, ByteBuf b, ChannelHandlerContext ctx) {
+		if (logger.isTraceEnabled() && b.isReadable()) {
+			logger.trace(String.format("%s [%s]:%n%s%n", msg, ctx.channel().remoteAddress().toString(),
+					ByteBufUtil.prettyHexDump(b)));
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+
+/**
+ * Splits outbound data of an upgraded connection into frames of at most {@link HomekitClientConnection#MAX_FRAME_LENGTH}
+ * bytes and encrypts them directly into a single pooled buffer sized for the complete output.
+ */
+class EncryptedFrameEncoder extends MessageToByteEncoder<ByteBuf> {
+
+	private final HomekitClientConnection connection;
+	private final byte[] scratch = new byte[HomekitClientConnection.MAX_FRAME_LENGTH];
+	private boolean precompute = false;
+	private boolean precomputeScheduled = false;
+
+	public EncryptedFrameEncoder(HomekitClientConnection connection) {
+		super(false);
+		this.connection = connection;
+	}
+
+	@Override
+	public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+		// The encoder is added once the connection is upgraded, so its ciphers are in place
+		precompute = connection.isPrecomputingOutbound();
+		schedulePrecompute(ctx);
+	}
+
+	@Override
+	protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, ByteBuf msg, boolean preferDirect) {
+		int length = msg.readableBytes();
+		int frames = (length + HomekitClientConnection.MAX_FRAME_LENGTH - 1) / HomekitClientConnection.MAX_FRAME_LENGTH;
+		return ctx.alloc().heapBuffer(length + frames * HomekitClientConnection.FRAME_OVERHEAD);
+	}
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
+		EncryptedFrameDecoder.traceData("Sending data", msg, ctx);
+		while (msg.isReadable()) {
+			int length = Math.min(msg.readableBytes(), HomekitClientConnection.MAX_FRAME_LENGTH);
+			byte[] plaintext;
+			int offset;
+			if (msg.hasArray()) {
+				plaintext = msg.array();
+				offset = msg.arrayOffset() + msg.readerIndex();
+			} else {
+				msg.getBytes(msg.readerIndex(), scratch, 0, length);
+				plaintext = scratch;
+				offset = 0;
+			}
+			int written = connection.encryptFrame(plaintext, offset, length,
+					out.array(), out.arrayOffset() + out.writerIndex());
+			out.writerIndex(out.writerIndex() + written);
+			msg.skipBytes(length);
+		}
+		schedulePrecompute(ctx);
+	}
+
+	/**
+	 * Queues the precomputation behind the I/O already pending on the event loop, so it never delays a write. Nothing
+	 * is queued when the connection does not precompute.
+	 */
+	private void schedulePrecompute(ChannelHandlerContext ctx) {
+		if (precompute && !precomputeScheduled) {
+			precomputeScheduled = true;
+			ctx.executor().execute(() -> {
+				precomputeScheduled = false;
+				connection.precomputeOutbound();
+			});
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.io.IOException;
+
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.CorruptedFrameException;
+
+/**
+ * Splits the inbound byte stream of an upgraded connection into complete frames. Frames that arrive whole are passed on
+ * as views of the inbound buffer. Only a frame split across reads is copied, into a buffer sized for the largest legal
+ * frame, so a connection never holds more than one partial frame no matter how the client segments its writes.
+ *
+ * The length prefix is checked as soon as both of its bytes have arrived, before any of the frame is buffered.
+ */
+class FrameReassembler {
+
+	static final int MAX_FRAME = HomekitClientConnection.MAX_FRAME_LENGTH + HomekitClientConnection.FRAME_OVERHEAD;
+
+	interface FrameHandler {
+
+		/**
+		 * @param frame buffer holding the frame. The contents are only valid for the duration of the call.
+		 * @param offset position of the length prefix in frame.
+		 * @param length length of the complete frame, including the prefix and authentication tag.
+		 */
+		void handleFrame(byte[] frame, int offset, int length) throws IOException;
+	}
+
+	private final byte[] partial = new byte[MAX_FRAME];
+	private int buffered = 0;
+
+	/**
+	 * Passes every frame completed by the readable bytes of in to the handler, and retains a trailing partial frame
+	 * until the next call. All readable bytes of in are consumed.
+	 *
+	 * @throws CorruptedFrameException if a length prefix exceeds {@link HomekitClientConnection#MAX_FRAME_LENGTH}.
+	 */
+	void reassemble(ByteBuf in, FrameHandler handler) throws IOException {
+		if (buffered > 0 && in.isReadable()) {
+			if (buffered == 1) {
+				// Complete the split length prefix so it can be checked before anything else is buffered
+				partial[buffered++] = in.readByte();
+			}
+			int frameLength = frameLength(partial[0], partial[1]);
+			int count = Math.min(frameLength - buffered, in.readableBytes());
+			in.readBytes(partial, buffered, count);
+			buffered += count;
+			if (buffered < frameLength) {
+				return;
+			}
+			buffered = 0;
+			handler.handleFrame(partial, 0, frameLength);
+		}
+		while (in.readableBytes() >= 2) {
+			int start = in.readerIndex();
+			int frameLength = frameLength(in.getByte(start), in.getByte(start + 1));
+			if (in.readableBytes() < frameLength) {
+				break;
+			}
+			if (in.hasArray()) {
+				handler.handleFrame(in.array(), in.arrayOffset() + start, frameLength);
+			} else {
+				in.getBytes(start, partial, 0, frameLength);
+				handler.handleFrame(partial, 0, frameLength);
+			}
+			in.skipBytes(frameLength);
+		}
+		if (in.isReadable()) {
+			buffered = in.readableBytes();
+			in.readBytes(partial, 0, buffered);
+		}
+	}
+
+	/**
+	 * @return the number of bytes of an incomplete frame currently held.
+	 */
+	int buffered() {
+		return buffered;
+	}
+
+	private static int frameLength(byte low, byte high) throws CorruptedFrameException {
+		int length = (low & 0xff) | (high & 0xff) << 8;
+		if (length > HomekitClientConnection.MAX_FRAME_LENGTH) {
+			throw new CorruptedFrameException("Frame length "+length+" exceeds maximum of "
+					+HomekitClientConnection.MAX_FRAME_LENGTH);
+		}
+		return length + HomekitClientConnection.FRAME_OVERHEAD;
+	}
+}
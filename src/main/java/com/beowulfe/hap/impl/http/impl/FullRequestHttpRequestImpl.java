@@ -4,19 +4,21 @@ import io.netty.handler.codec.http.FullHttpRequest;
 
 class FullRequestHttpRequestImpl extends DefaultHttpRequestImpl {
 	
-	private final FullHttpRequest nettyRequest;
+	private final byte[] body;
 	
+	/**
+	 * The body is copied, so the request can be handled after the netty request has been released.
+	 */
 	public FullRequestHttpRequestImpl(FullHttpRequest nettyRequest) {
 		super(nettyRequest);
-		this.nettyRequest = nettyRequest;
+		body = new byte[nettyRequest.content().readableBytes()];
+		nettyRequest.content().readBytes(body);
 	}
 
 
 	@Override
 	public byte[] getBody() {
-		byte[] ret = new byte[nettyRequest.content().readableBytes()];
-		nettyRequest.content().readBytes(ret);
-		return ret;
+		return body;
 	}
 
 }
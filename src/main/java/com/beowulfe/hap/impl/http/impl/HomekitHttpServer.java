@@ -2,6 +2,8 @@ package com.beowulfe.hap.impl.http.impl;
 
 import java8.util.concurrent.CompletableFuture;
 
+import com.beowulfe.hap.HomekitEventStats;
+import com.beowulfe.hap.HomekitPairingStats;
 import com.beowulfe.hap.impl.HomekitWebHandler;
 import com.beowulfe.hap.impl.http.HomekitClientConnectionFactory;
 
@@ -10,23 +12,40 @@ public class HomekitHttpServer implements HomekitWebHandler {
 	private NettyHomekitHttpService service = null;
 	private final int port;
 	private final int nThreads;
+	private final PairingExecutor pairingExecutor = PairingExecutor.create();
+	private final OutboundEventStats eventStats = OutboundEventStats.create();
 
 	@Override
 	public void stop() {
 		if (this.service != null) {
 			this.service.shutdown();
 		}
+		pairingExecutor.shutdown();
 	}
 	
 	public HomekitHttpServer(int port, int nThreads) {
 		this.port = port;
 		this.nThreads = nThreads;
 	}
+	
+	/**
+	 * @return the queue metrics of the executor running pair-setup and pair-verify requests.
+	 */
+	public HomekitPairingStats getPairingStats() {
+		return pairingExecutor;
+	}
+
+	/**
+	 * @return the counts of events queued, conflated and dropped for connections that were not writable.
+	 */
+	public HomekitEventStats getEventStats() {
+		return eventStats;
+	}
 
 	@Override
 	public CompletableFuture<Integer> start(HomekitClientConnectionFactory clientConnectionFactory) {
 		if (service == null) {
-			this.service = NettyHomekitHttpService.create(port, nThreads);
+			this.service = NettyHomekitHttpService.create(port, nThreads, pairingExecutor, eventStats);
 			return this.service.create(clientConnectionFactory);
 		} else {
 			throw new RuntimeException("HomekitHttpServer can only be started once");
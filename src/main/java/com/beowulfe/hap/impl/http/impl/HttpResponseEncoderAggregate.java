@@ -4,22 +4,30 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpResponseEncoder;
 
-import java.util.Iterator;
 import java.util.List;
 
+/**
+ * Encodes each response, or each chunk of a chunked response, into a single buffer so that it is encrypted as a whole
+ * rather than as separate frames for the headers, body and chunk delimiters.
+ */
 public class HttpResponseEncoderAggregate extends HttpResponseEncoder {
 
 	@Override
 	protected void encode(ChannelHandlerContext ctx, Object msg,
 			List<Object> out) throws Exception {
 		super.encode(ctx, msg, out);
-		if (out.size() > 0) {
-			Iterator<Object> i = out.iterator();
-			ByteBuf b = (ByteBuf) i.next();
-			while (i.hasNext()) {
-				b.writeBytes((ByteBuf) i.next());
-				i.remove();
+		if (out.size() > 1) {
+			int length = 0;
+			for (Object part: out) {
+				length += ((ByteBuf) part).readableBytes();
 			}
+			ByteBuf aggregate = ctx.alloc().heapBuffer(length);
+			for (Object part: out) {
+				aggregate.writeBytes((ByteBuf) part);
+				((ByteBuf) part).release();
+			}
+			out.clear();
+			out.add(aggregate);
 		}
 	}
 
@@ -1,6 +1,7 @@
 package com.beowulfe.hap.impl.http.impl;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
@@ -28,16 +29,29 @@ class NettyHomekitHttpService {
 	private final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
 	private final int port;
 	private final int nThreads;
+	private final PairingExecutor pairingExecutor;
+	private final OutboundEventStats eventStats;
 	
-	public static NettyHomekitHttpService create(int port, int nThreads) { 
-		return new NettyHomekitHttpService(port, nThreads);
+	/**
+	 * Outbound bytes buffered above which a connection stops taking events and queues them instead, and below which it
+	 * takes them again. Events are a few hundred bytes, so this is reached well before a stalled controller holds much.
+	 */
+	private static final int WRITE_BUFFER_HIGH_WATER_MARK = 32 * 1024;
+	private static final int WRITE_BUFFER_LOW_WATER_MARK = 8 * 1024;
+	
+	public static NettyHomekitHttpService create(int port, int nThreads, PairingExecutor pairingExecutor,
+			OutboundEventStats eventStats) { 
+		return new NettyHomekitHttpService(port, nThreads, pairingExecutor, eventStats);
 	}
 	
-	private NettyHomekitHttpService(int port, int nThreads) {
+	private NettyHomekitHttpService(int port, int nThreads, PairingExecutor pairingExecutor,
+			OutboundEventStats eventStats) {
 		bossGroup = new NioEventLoopGroup();
 		workerGroup = new NioEventLoopGroup();
 		this.port = port;
 		this.nThreads = nThreads;
+		this.pairingExecutor = pairingExecutor;
+		this.eventStats = eventStats;
 	}
 	
 	public CompletableFuture<Integer> create(HomekitClientConnectionFactory connectionFactory) {
@@ -46,9 +60,12 @@ class NettyHomekitHttpService {
 		b.group(bossGroup, workerGroup)
 			.channel(NioServerSocketChannel.class)
 			.handler(new LoggingHandler(LogLevel.INFO))
-			.childHandler(new ServerInitializer(connectionFactory, allChannels, nThreads))
+			.childHandler(new ServerInitializer(connectionFactory, allChannels, nThreads, pairingExecutor, eventStats))
 			.option(ChannelOption.SO_BACKLOG, 128)
-			.childOption(ChannelOption.SO_KEEPALIVE, true);
+			.childOption(ChannelOption.SO_KEEPALIVE, true)
+			.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+			.childOption(ChannelOption.WRITE_BUFFER_HIGH_WATER_MARK, WRITE_BUFFER_HIGH_WATER_MARK)
+			.childOption(ChannelOption.WRITE_BUFFER_LOW_WATER_MARK, WRITE_BUFFER_LOW_WATER_MARK);
 		final ChannelFuture bindFuture = b.bind(port);
 		bindFuture.addListener(new GenericFutureListener<Future<? super Void>>() {
 
@@ -2,6 +2,7 @@ package com.beowulfe.hap.impl.http.impl;
 
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -20,13 +21,28 @@ class NettyResponseUtil {
 		FullHttpResponse response = new DefaultFullHttpResponse(
 				homekitResponse.getVersion() == HttpResponse.HttpVersion.EVENT_1_0 ? EVENT_VERSION : HttpVersion.HTTP_1_1, 
 				HttpResponseStatus.valueOf(homekitResponse.getStatusCode()),
-				Unpooled.copiedBuffer(homekitResponse.getBody()));
+				Unpooled.wrappedBuffer(homekitResponse.getBody()));
+		addHeaders(homekitResponse, response);
+		response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, response.content().readableBytes());
+		return response;
+	}
+	
+	/**
+	 * @return the status line and headers of a response whose body follows in chunks.
+	 */
+	public static io.netty.handler.codec.http.HttpResponse createChunkedResponse(HttpResponse homekitResponse) {
+		io.netty.handler.codec.http.HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1,
+				HttpResponseStatus.valueOf(homekitResponse.getStatusCode()));
+		addHeaders(homekitResponse, response);
+		response.headers().set(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+		return response;
+	}
+	
+	private static void addHeaders(HttpResponse homekitResponse, io.netty.handler.codec.http.HttpResponse response) {
 		for (Entry<String, String> header: homekitResponse.getHeaders().entrySet()) {
 			response.headers().add(header.getKey(), header.getValue());
 		}
-		response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, response.content().readableBytes());
 		response.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
-		return response;
 	}
 
 }
@@ -0,0 +1,74 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.json.JsonObject;
+
+import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.json.EventResponse;
+
+import io.netty.channel.Channel;
+
+/**
+ * Writes the events of one connection while the channel is writable, and queues them while it is not. The queue keeps
+ * only the latest value of each characteristic and is bounded, dropping the oldest characteristic when it is full, so a
+ * controller that stops reading costs a fixed amount of memory. Once the channel is writable again the queue is sent as
+ * a single event.
+ */
+class OutboundEventQueue {
+
+	private final Channel channel;
+	private final OutboundEventStats stats;
+	private final Map<Long, JsonObject> pending = new LinkedHashMap<>();
+
+	OutboundEventQueue(Channel channel, OutboundEventStats stats) {
+		this.channel = channel;
+		this.stats = stats;
+	}
+
+	synchronized void offer(HttpResponse message) {
+		if (!channel.isActive()) {
+			return;
+		}
+		if (!(message instanceof EventResponse) || ((EventResponse) message).getCharacteristics() == null
+				|| (pending.isEmpty() && channel.isWritable())) {
+			channel.writeAndFlush(NettyResponseUtil.createResponse(message));
+			return;
+		}
+		for (JsonObject characteristic: ((EventResponse) message).getCharacteristics()) {
+			long key = (long) characteristic.getInt("aid") << 32 | (characteristic.getInt("iid") & 0xffffffffL);
+			stats.queued();
+			if (pending.put(key, characteristic) != null) {
+				stats.conflated();
+			} else if (pending.size() > stats.getQueueLimit()) {
+				Iterator<JsonObject> eldest = pending.values().iterator();
+				eldest.next();
+				eldest.remove();
+				stats.dropped();
+			}
+		}
+		drain();
+	}
+
+	/**
+	 * Sends the queued values if the channel has become writable.
+	 */
+	synchronized void drain() {
+		if (pending.isEmpty() || !channel.isActive() || !channel.isWritable()) {
+			return;
+		}
+		EventResponse message = new EventResponse(new ArrayList<>(pending.values()));
+		pending.clear();
+		channel.writeAndFlush(NettyResponseUtil.createResponse(message));
+	}
+
+	/**
+	 * @return the number of characteristics waiting for the channel to become writable.
+	 */
+	synchronized int size() {
+		return pending.size();
+	}
+}
@@ -0,0 +1,61 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.beowulfe.hap.HomekitEventStats;
+
+/**
+ * Counters shared by the outbound event queues of all connections.
+ */
+class OutboundEventStats implements HomekitEventStats {
+
+	private static final int DEFAULT_QUEUE = 256;
+
+	private final int queueLimit;
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong conflated = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	OutboundEventStats(int queueLimit) {
+		this.queueLimit = queueLimit;
+	}
+
+	/**
+	 * @return stats for queues sized from the system property, by default {@value #DEFAULT_QUEUE} characteristics.
+	 */
+	static OutboundEventStats create() {
+		return new OutboundEventStats(Math.max(1, Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE)));
+	}
+
+	@Override
+	public int getQueueLimit() {
+		return queueLimit;
+	}
+
+	@Override
+	public long getQueuedCount() {
+		return queued.get();
+	}
+
+	@Override
+	public long getConflatedCount() {
+		return conflated.get();
+	}
+
+	@Override
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	void queued() {
+		queued.incrementAndGet();
+	}
+
+	void conflated() {
+		conflated.incrementAndGet();
+	}
+
+	void dropped() {
+		dropped.incrementAndGet();
+	}
+}
@@ -0,0 +1,123 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.beowulfe.hap.HomekitPairingStats;
+
+/**
+ * Runs pair-setup and pair-verify requests on threads of their own, so that a burst of handshakes cannot hold up
+ * reads and writes of characteristics behind 3072 bit SRP and Ed25519 work. The queue is bounded; a request that does
+ * not fit is rejected straight away, and the caller answers it with a busy error so the controller retries later.
+ *
+ * The size of the pool and of the queue can be set with {@link HomekitPairingStats#THREADS_PROPERTY} and
+ * {@link HomekitPairingStats#QUEUE_PROPERTY}.
+ */
+class PairingExecutor implements HomekitPairingStats {
+
+	private static final int DEFAULT_QUEUE = 16;
+
+	private final ThreadPoolExecutor executor;
+	private final int queueLimit;
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	PairingExecutor(int threads, int queueLimit) {
+		this.queueLimit = queueLimit;
+		AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<Runnable>(queueLimit), runnable -> {
+					Thread thread = new Thread(runnable, "hap-pairing-"+threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return an executor sized from the system properties, by default half of the available processors and a queue
+	 * 	of {@value #DEFAULT_QUEUE} requests.
+	 */
+	static PairingExecutor create() {
+		int threads = Integer.getInteger(THREADS_PROPERTY, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+		return new PairingExecutor(Math.max(1, threads), Math.max(1, Integer.getInteger(QUEUE_PROPERTY, DEFAULT_QUEUE)));
+	}
+
+	/**
+	 * @return whether requests for the uri are run by this executor.
+	 */
+	boolean handles(String uri) {
+		return "/pair-setup".equals(uri) || "/pair-verify".equals(uri);
+	}
+
+	/**
+	 * @throws RejectedExecutionException if the queue is full.
+	 */
+	void execute(Runnable task) {
+		long queued = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				long wait = System.nanoTime() - queued;
+				totalWaitNanos.addAndGet(wait);
+				long max = maxWaitNanos.get();
+				while (wait > max && !maxWaitNanos.compareAndSet(max, wait)) {
+					max = maxWaitNanos.get();
+				}
+				try {
+					task.run();
+				} finally {
+					completed.incrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			throw e;
+		}
+	}
+
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return executor.getQueue().size();
+	}
+
+	@Override
+	public int getQueueLimit() {
+		return queueLimit;
+	}
+
+	@Override
+	public int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	@Override
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	@Override
+	public double getAverageWaitMillis() {
+		long count = completed.get();
+		return count == 0 ? 0 : totalWaitNanos.get() / 1e6 / count;
+	}
+
+	@Override
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1e6;
+	}
+}
@@ -20,11 +20,16 @@ class ServerInitializer extends ChannelInitializer<SocketChannel> {
 	private final HomekitClientConnectionFactory homekit;
 	private final ChannelGroup allChannels;
 	private final EventExecutorGroup blockingExecutorGroup;
+	private final PairingExecutor pairingExecutor;
+	private final OutboundEventStats eventStats;
 	
-	public ServerInitializer(HomekitClientConnectionFactory homekit, ChannelGroup allChannels, int nThreads) {
+	public ServerInitializer(HomekitClientConnectionFactory homekit, ChannelGroup allChannels, int nThreads,
+			PairingExecutor pairingExecutor, OutboundEventStats eventStats) {
 		this.homekit = homekit;
 		this.allChannels = allChannels;
 		this.blockingExecutorGroup = new DefaultEventExecutorGroup(nThreads);
+		this.pairingExecutor = pairingExecutor;
+		this.eventStats = eventStats;
 	}
 	
 	@Override
@@ -34,7 +39,7 @@ class ServerInitializer extends ChannelInitializer<SocketChannel> {
 		pipeline.addLast(HTTP_HANDLER_NAME, new HttpResponseEncoderAggregate());
 		pipeline.addLast(new HttpRequestDecoder());
 		pipeline.addLast(new HttpObjectAggregator(MAX_POST));
-		pipeline.addLast(blockingExecutorGroup, new AccessoryHandler(homekit));
+		pipeline.addLast(blockingExecutorGroup, new AccessoryHandler(homekit, pairingExecutor, eventStats));
 		allChannels.add(ch);
 	}
 
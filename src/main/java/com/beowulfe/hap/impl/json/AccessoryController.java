@@ -1,24 +1,11 @@
 package com.beowulfe.hap.impl.json;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java8.util.concurrent.CompletableFuture;
-import java8.util.stream.StreamSupport;
 
-import javax.json.Json;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
-import javax.json.JsonObjectBuilder;
-
-import com.beowulfe.hap.HomekitAccessory;
-import com.beowulfe.hap.Service;
-import com.beowulfe.hap.characteristics.Characteristic;
 import com.beowulfe.hap.impl.HomekitRegistry;
+import com.beowulfe.hap.impl.PublishedAccessory;
 import com.beowulfe.hap.impl.http.HttpResponse;
 
 public class AccessoryController {
@@ -29,57 +16,24 @@ public class AccessoryController {
 		this.registry = registry;
 	}
 
+	/**
+	 * Starts reading every characteristic, and returns a response that writes each accessory once its values are in.
+	 */
 	public HttpResponse listing() throws Exception {
-		JsonArrayBuilder accessories = Json.createArrayBuilder();
-		
-		Map<Integer, List<CompletableFuture<JsonObject>>> accessoryServiceFutures = new HashMap<>();
-		for (HomekitAccessory accessory: registry.getAccessories()) {
-			int iid = 0;
-			List<CompletableFuture<JsonObject>> serviceFutures = new ArrayList<>();
-			for (Service service: registry.getServices(accessory.getId())) {
-				serviceFutures.add(toJson(service, iid));
-				iid += service.getCharacteristics().size() + 1;
-			}
-			accessoryServiceFutures.put(accessory.getId(), serviceFutures);
-		}
-		
-		Map<Integer, JsonArrayBuilder> serviceArrayBuilders = new HashMap<>();
-		for (Entry<Integer, List<CompletableFuture<JsonObject>>> entry: accessoryServiceFutures.entrySet()) {
-			JsonArrayBuilder arr = Json.createArrayBuilder();
-			for (CompletableFuture<JsonObject> future: entry.getValue()) {
-				arr.add(future.join());
+		List<AccessoryListingResponse.Accessory> accessories = new ArrayList<>();
+		for (PublishedAccessory accessory: registry.getPublishedAccessories()) {
+			List<AccessoryListingResponse.Service> services = new ArrayList<>();
+			for (PublishedAccessory.PublishedService service: accessory.getPublishedServices()) {
+				List<CharacteristicTemplate> characteristics = service.getTemplates();
+				List<CompletableFuture<byte[]>> values = new ArrayList<>(characteristics.size());
+				for (CharacteristicTemplate template: characteristics) {
+					values.add(template.read());
+				}
+				services.add(new AccessoryListingResponse.Service(service.getId(), service.getType(), characteristics,
+						values));
 			}
-			serviceArrayBuilders.put(entry.getKey(), arr);
-		}
-		
-		for (HomekitAccessory accessory: registry.getAccessories()) {
-			accessories.add(Json.createObjectBuilder().add("aid", accessory.getId()).add("services", serviceArrayBuilders.get(accessory.getId())));
-		}
-						
-		try(ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-			Json.createWriter(baos).write(
-				Json.createObjectBuilder().add("accessories", accessories).build()
-			);
-			return new HapJsonResponse(baos.toByteArray());
-		}
-	}
-	
-	private CompletableFuture<JsonObject> toJson(Service service, int interfaceId) throws Exception {
-		JsonObjectBuilder builder = Json.createObjectBuilder()
-			.add("iid", ++interfaceId)
-			.add("type", service.getType());
-		List<Characteristic> characteristics = service.getCharacteristics();
-		Collection<CompletableFuture<JsonObject>> characteristicFutures = new ArrayList<>(characteristics.size());
-		for (Characteristic characteristic: characteristics) {
-			characteristicFutures.add(characteristic.toJson(++interfaceId));
+			accessories.add(new AccessoryListingResponse.Accessory(accessory.getId(), services));
 		}
-		
-		return CompletableFuture.allOf(characteristicFutures.toArray(new CompletableFuture<?>[characteristicFutures.size()]))
-			.thenApply(v -> {
-				JsonArrayBuilder jsonCharacteristics = Json.createArrayBuilder();
-				StreamSupport.stream(characteristicFutures).map(future -> future.join()).forEach(c -> jsonCharacteristics.add(c));
-				builder.add("characteristics", jsonCharacteristics);
-				return builder.build();
-			});
+		return new AccessoryListingResponse(accessories);
 	}
 }
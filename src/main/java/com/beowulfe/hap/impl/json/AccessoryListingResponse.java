@@ -0,0 +1,147 @@
+package com.beowulfe.hap.impl.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java8.util.concurrent.CompletableFuture;
+import java8.util.concurrent.CompletionException;
+
+import com.beowulfe.hap.impl.http.StreamingResponse;
+
+/**
+ * The /accessories document, written accessory by accessory. Each accessory is written and flushed as soon as the
+ * values of its characteristics are known and every accessory before it has been written, so the start of the
+ * document is on its way to the controller while slower accessories are still being read.
+ *
+ * Characteristics are written from their {@link CharacteristicTemplate}s, so only their values are encoded here.
+ */
+class AccessoryListingResponse implements StreamingResponse {
+
+	private static final Map<String, String> headers = Collections.unmodifiableMap(
+			new HashMap<String, String>() {
+				private static final long serialVersionUID = 1L;
+				{
+					put("Content-type", "application/hap+json");
+				}
+			});
+
+	private final List<Accessory> accessories;
+
+	AccessoryListingResponse(List<Accessory> accessories) {
+		this.accessories = accessories;
+	}
+
+	@Override
+	public int getStatusCode() {
+		return 200;
+	}
+
+	@Override
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	@Override
+	public CompletableFuture<Void> writeBody(OutputStream out) {
+		write(out, "{\"accessories\":[");
+		CompletableFuture<Void> written = CompletableFuture.completedFuture(null);
+		for (int i = 0; i < accessories.size(); i++) {
+			Accessory accessory = accessories.get(i);
+			boolean first = i == 0;
+			written = written.thenCombine(accessory.characteristicsRead(), (v, w) -> {
+				try {
+					if (!first) {
+						out.write(',');
+					}
+					accessory.write(out);
+					out.flush();
+				} catch (IOException e) {
+					throw new CompletionException(e);
+				}
+				return null;
+			});
+		}
+		return written.thenRun(() -> {
+			write(out, "]}");
+			try {
+				out.close();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	private static void write(OutputStream out, String token) {
+		try {
+			JsonBytes.writeAscii(out, token);
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * An accessory whose characteristics are being read.
+	 */
+	static class Accessory {
+
+		private final int aid;
+		private final List<Service> services;
+
+		Accessory(int aid, List<Service> services) {
+			this.aid = aid;
+			this.services = services;
+		}
+
+		private CompletableFuture<Void> characteristicsRead() {
+			int count = 0;
+			for (Service service: services) {
+				count += service.values.size();
+			}
+			CompletableFuture<?>[] futures = new CompletableFuture<?>[count];
+			int i = 0;
+			for (Service service: services) {
+				for (CompletableFuture<byte[]> value: service.values) {
+					futures[i++] = value;
+				}
+			}
+			return CompletableFuture.allOf(futures);
+		}
+
+		private void write(OutputStream out) throws IOException {
+			JsonBytes.writeAscii(out, "{\"aid\":"+aid+",\"services\":[");
+			for (int s = 0; s < services.size(); s++) {
+				Service service = services.get(s);
+				JsonBytes.writeAscii(out, (s == 0 ? "" : ",")+"{\"iid\":"+service.iid+",\"type\":");
+				JsonBytes.writeString(out, service.type);
+				JsonBytes.writeAscii(out, ",\"characteristics\":[");
+				for (int c = 0; c < service.characteristics.size(); c++) {
+					if (c > 0) {
+						out.write(',');
+					}
+					service.characteristics.get(c).write(out, service.values.get(c).join());
+				}
+				JsonBytes.writeAscii(out, "]}");
+			}
+			JsonBytes.writeAscii(out, "]}");
+		}
+	}
+
+	static class Service {
+
+		private final int iid;
+		private final String type;
+		private final List<CharacteristicTemplate> characteristics;
+		private final List<CompletableFuture<byte[]>> values;
+
+		Service(int iid, String type, List<CharacteristicTemplate> characteristics,
+				List<CompletableFuture<byte[]>> values) {
+			this.iid = iid;
+			this.type = type;
+			this.characteristics = characteristics;
+			this.values = values;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.beowulfe.hap.impl.json;
+
+import javax.json.JsonValue;
+
+import com.beowulfe.hap.characteristics.EventableCharacteristic;
+
+/**
+ * A change of a characteristic to be sent to the controllers subscribed to it.
+ */
+public class CharacteristicEvent {
+
+	private final int accessoryId;
+	private final int iid;
+	private final EventableCharacteristic characteristic;
+	private final JsonValue value;
+
+	public CharacteristicEvent(int accessoryId, int iid, EventableCharacteristic characteristic) {
+		this(accessoryId, iid, characteristic, null);
+	}
+
+	/**
+	 * @param value the serialized new value, or null to read it from the characteristic when the event is sent.
+	 */
+	public CharacteristicEvent(int accessoryId, int iid, EventableCharacteristic characteristic, JsonValue value) {
+		this.accessoryId = accessoryId;
+		this.iid = iid;
+		this.characteristic = characteristic;
+		this.value = value;
+	}
+
+	public int getAccessoryId() {
+		return accessoryId;
+	}
+
+	public int getIid() {
+		return iid;
+	}
+
+	public EventableCharacteristic getCharacteristic() {
+		return characteristic;
+	}
+
+	/**
+	 * @return the serialized new value, or null if it has to be read from the characteristic.
+	 */
+	public JsonValue getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the accessory and instance id packed into one key, unique within a registry.
+	 */
+	public long getKey() {
+		return (long) accessoryId << 32 | (iid & 0xffffffffL);
+	}
+}
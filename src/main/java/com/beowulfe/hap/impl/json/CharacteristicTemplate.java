@@ -0,0 +1,98 @@
+package com.beowulfe.hap.impl.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java8.util.concurrent.CompletableFuture;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.beowulfe.hap.characteristics.BaseCharacteristic;
+import com.beowulfe.hap.characteristics.Characteristic;
+
+/**
+ * The JSON serialized form of a characteristic, with everything but its value encoded once when the registry is
+ * reset. Reading the characteristic then only encodes the value, which is written between the precomputed bytes.
+ *
+ * Characteristics that do not describe their attributes through {@link BaseCharacteristic#getMetadata()} are
+ * serialized in full from {@link Characteristic#toJson(int)} on every read.
+ */
+public class CharacteristicTemplate {
+
+	private static final Logger logger = LoggerFactory.getLogger(CharacteristicTemplate.class);
+
+	private static final byte[] NO_VALUE = new byte[0];
+	private static final byte[] NULL_VALUE = ",\"value\":null".getBytes(StandardCharsets.UTF_8);
+
+	private final Characteristic characteristic;
+	private final int iid;
+	/**
+	 * The serialized attributes without the closing brace, or null if the characteristic has no template.
+	 */
+	private final byte[] prefix;
+
+	private CharacteristicTemplate(Characteristic characteristic, int iid, byte[] prefix) {
+		this.characteristic = characteristic;
+		this.iid = iid;
+		this.prefix = prefix;
+	}
+
+	public static CharacteristicTemplate compile(Characteristic characteristic, int iid) {
+		JsonObject metadata = characteristic instanceof BaseCharacteristic ?
+				((BaseCharacteristic<?>) characteristic).getMetadata() : null;
+		if (metadata == null) {
+			return new CharacteristicTemplate(characteristic, iid, null);
+		}
+		JsonObjectBuilder builder = Json.createObjectBuilder().add("iid", iid);
+		for (Entry<String, JsonValue> attribute: metadata.entrySet()) {
+			builder.add(attribute.getKey(), attribute.getValue());
+		}
+		byte[] serialized = serialize(builder.build());
+		return new CharacteristicTemplate(characteristic, iid, Arrays.copyOf(serialized, serialized.length - 1));
+	}
+
+	/**
+	 * Retrieves the current value of the characteristic. A value that cannot be read is listed as null, as
+	 * {@link Characteristic#toJson(int)} does.
+	 * 
+	 * @return a future completing with the encoded value, to be passed to {@link #write(OutputStream, byte[])}.
+	 */
+	CompletableFuture<byte[]> read() {
+		if (prefix == null) {
+			return characteristic.toJson(iid).thenApply(CharacteristicTemplate::serialize);
+		}
+		return ((BaseCharacteristic<?>) characteristic).supplyJsonValueAsync()
+				.thenApply(value -> value == null ? NO_VALUE : (",\"value\":"+value).getBytes(StandardCharsets.UTF_8))
+				.exceptionally(t -> {
+					logger.error("Could not retrieve value "+characteristic.getClass().getName(), t);
+					return NULL_VALUE;
+				});
+	}
+
+	/**
+	 * Writes the serialized characteristic.
+	 * 
+	 * @param value the result of {@link #read()}.
+	 */
+	void write(OutputStream out, byte[] value) throws IOException {
+		if (prefix != null) {
+			out.write(prefix);
+			out.write(value);
+			out.write('}');
+		} else {
+			out.write(value);
+		}
+	}
+
+	private static byte[] serialize(JsonObject json) {
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
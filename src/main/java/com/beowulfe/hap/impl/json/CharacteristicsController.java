@@ -1,6 +1,10 @@
 package com.beowulfe.hap.impl.json;
 
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.accessories.BatchWritable;
+import com.beowulfe.hap.characteristics.BaseCharacteristic;
 import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.characteristics.CharacteristicWrite;
 import com.beowulfe.hap.characteristics.EventableCharacteristic;
 import com.beowulfe.hap.impl.HomekitRegistry;
 import com.beowulfe.hap.impl.connections.SubscriptionManager;
@@ -14,18 +18,66 @@ import org.slf4j.LoggerFactory;
 import javax.json.*;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java8.util.concurrent.CompletionException;
+import java8.util.concurrent.CompletableFuture;
 
 public class CharacteristicsController {
 	
+	/**
+	 * System property with the time in milliseconds a characteristic read or write may take before it is reported as
+	 * timed out.
+	 */
+	public static final String READ_DEADLINE_PROPERTY = "com.beowulfe.hap.readDeadline";
+	
+	/**
+	 * System property with the number of threads that apply characteristic writes. Writes to different accessories in
+	 * the same request run concurrently on these threads.
+	 */
+	public static final String WRITE_THREADS_PROPERTY = "com.beowulfe.hap.writeThreads";
+	
+	private static final long DEADLINE = Long.getLong(READ_DEADLINE_PROPERTY, 5000);
+	
+	private static final Executor WRITE_EXECUTOR = createWriteExecutor();
+	
 	Logger logger = LoggerFactory.getLogger(CharacteristicsController.class);
 
 	private final HomekitRegistry registry;
 	private final SubscriptionManager subscriptions;
+	private final long deadline;
+	private final Executor writeExecutor;
 	
 	public CharacteristicsController(HomekitRegistry registry, SubscriptionManager subscriptions) {
+		this(registry, subscriptions, DEADLINE, WRITE_EXECUTOR);
+	}
+	
+	CharacteristicsController(HomekitRegistry registry, SubscriptionManager subscriptions, long deadline,
+			Executor writeExecutor) {
 		this.registry = registry;
 		this.subscriptions = subscriptions;
+		this.deadline = deadline;
+		this.writeExecutor = writeExecutor;
+	}
+	
+	private static Executor createWriteExecutor() {
+		int threads = Math.max(1, Integer.getInteger(WRITE_THREADS_PROPERTY, 8));
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), runnable -> {
+					Thread thread = new Thread(runnable, "hap-write-"+threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
 	}
 
 	public HttpResponse get(HttpRequest request) throws Exception {
@@ -33,7 +85,7 @@ public class CharacteristicsController {
 		// Characteristics are requested with /characteristics?id=1.1,2.1,3.1
 		String query = uri.substring("/characteristics?id=".length());
 		String[] ids = query.split(",");
-		JsonArrayBuilder characteristics = Json.createArrayBuilder();
+		List<CompletableFuture<JsonObject>> reads = new ArrayList<>(ids.length);
 		for (String id : ids) {
 			String[] parts = id.split("\\.");
 			if (parts.length != 2) {
@@ -42,50 +94,199 @@ public class CharacteristicsController {
 			}
 			int aid = Integer.parseInt(parts[0]);
 			int iid = Integer.parseInt(parts[1]);
-			JsonObjectBuilder characteristic = Json.createObjectBuilder();
-			Map<Integer, Characteristic> characteristicMap = registry.getCharacteristics(aid);
-			if (!characteristicMap.isEmpty()) {
-				Characteristic targetCharacteristic = characteristicMap.get(iid);
-				if (targetCharacteristic != null) {
-					targetCharacteristic.supplyValue(characteristic);
-
-					characteristics.add(characteristic.add("aid", aid).add("iid", iid).build());
-				} else {
-					logger.warn("Accessory " + aid + " does not have characteristic " + iid + "Request: " + uri);
-				}
+			Characteristic targetCharacteristic = registry.getCharacteristic(aid, iid);
+			if (targetCharacteristic != null) {
+				reads.add(read(aid, iid, targetCharacteristic));
+			} else {
+				logger.warn("Accessory " + aid + " does not exist or does not have characteristic " + iid + ". Request: " + uri);
+			}
+		}
+		// Every read is bounded by the deadline, so this waits for the slowest of them at most
+		CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[reads.size()])).join();
+		boolean failed = false;
+		for (CompletableFuture<JsonObject> read: reads) {
+			failed |= read.join().containsKey("status");
+		}
+		JsonArrayBuilder characteristics = Json.createArrayBuilder();
+		for (CompletableFuture<JsonObject> read: reads) {
+			JsonObject characteristic = read.join();
+			if (failed && !characteristic.containsKey("status")) {
+				characteristics.add(withStatus(characteristic, HapStatus.SUCCESS));
 			} else {
-				logger.warn("Accessory " + aid + " has no characteristics or does not exist. Request: " + uri);
+				characteristics.add(characteristic);
 			}
 		}
 		try(ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
 			Json.createWriter(baos).write(Json.createObjectBuilder().add("characteristics", characteristics.build()).build());
-			return new HapJsonResponse(baos.toByteArray());
+			return failed ? new HapJsonMultiStatusResponse(baos.toByteArray()) : new HapJsonResponse(baos.toByteArray());
 		}
 	}
+	
+	/**
+	 * Reads a characteristic, reporting a status instead of the value if it fails or takes longer than
+	 * {@link #READ_DEADLINE_PROPERTY}.
+	 */
+	private CompletableFuture<JsonObject> read(int aid, int iid, Characteristic characteristic) {
+		CompletableFuture<JsonObjectBuilder> value;
+		try {
+			value = characteristic.supplyValueAsync(Json.createObjectBuilder());
+		} catch (Exception e) {
+			value = new CompletableFuture<>();
+			value.completeExceptionally(e);
+		}
+		return value
+			.thenApply(builder -> builder.add("aid", aid).add("iid", iid).build())
+			.exceptionally(t -> {
+				logger.error("Could not read characteristic " + aid + "." + iid, t);
+				return status(aid, iid, HapStatus.COMMUNICATION_FAILURE);
+			})
+			.completeOnTimeout(status(aid, iid, HapStatus.OPERATION_TIMED_OUT), deadline, TimeUnit.MILLISECONDS);
+	}
+	
+	private static JsonObject status(int aid, int iid, int status) {
+		return Json.createObjectBuilder().add("aid", aid).add("iid", iid).add("status", status).build();
+	}
+	
+	private static JsonObject withStatus(JsonObject characteristic, int status) {
+		JsonObjectBuilder builder = Json.createObjectBuilder();
+		for (Map.Entry<String, JsonValue> attribute: characteristic.entrySet()) {
+			builder.add(attribute.getKey(), attribute.getValue());
+		}
+		return builder.add("status", status).build();
+	}
 
 	public HttpResponse put(HttpRequest request, HomekitClientConnection connection) throws Exception {
+		JsonArray jsonCharacteristics;
 		try(ByteArrayInputStream bais = new ByteArrayInputStream(request.getBody())) {
-			JsonArray jsonCharacteristics = Json.createReader(bais)
-					.readObject().getJsonArray("characteristics");
-			for (JsonValue value: jsonCharacteristics) {
-				JsonObject jsonCharacteristic = (JsonObject) value;
-				int aid = jsonCharacteristic.getInt("aid");
-				int iid = jsonCharacteristic.getInt("iid");
-				Characteristic characteristic = registry.getCharacteristics(aid).get(iid);
-				
-				if (jsonCharacteristic.containsKey("value")) {
-					characteristic.setValue(jsonCharacteristic.get("value"));
+			jsonCharacteristics = Json.createReader(bais).readObject().getJsonArray("characteristics");
+		}
+		// Values are grouped by accessory, in the order the accessories first appear in the request
+		Map<Integer, WriteBatch> batches = new LinkedHashMap<>();
+		List<CompletableFuture<Integer>> statuses = new ArrayList<>(jsonCharacteristics.size());
+		for (JsonValue value: jsonCharacteristics) {
+			JsonObject jsonCharacteristic = (JsonObject) value;
+			int aid = jsonCharacteristic.getInt("aid");
+			int iid = jsonCharacteristic.getInt("iid");
+			Characteristic characteristic = registry.getCharacteristic(aid, iid);
+			if (characteristic == null) {
+				logger.warn("Write to unknown characteristic " + aid + "." + iid);
+				statuses.add(CompletableFuture.completedFuture(HapStatus.RESOURCE_DOES_NOT_EXIST));
+			} else if (jsonCharacteristic.containsKey("value")) {
+				WriteBatch batch = batches.get(aid);
+				if (batch == null) {
+					batch = new WriteBatch(aid);
+					batches.put(aid, batch);
 				}
-				if (jsonCharacteristic.containsKey("ev") && characteristic instanceof EventableCharacteristic) {
-					if (jsonCharacteristic.getBoolean("ev")) {
-						subscriptions.addSubscription(aid, iid, (EventableCharacteristic) characteristic, connection);
-					} else {
-						subscriptions.removeSubscription((EventableCharacteristic) characteristic, connection);
+				statuses.add(batch.add(new CharacteristicWrite(iid, characteristic, jsonCharacteristic.get("value"))));
+			} else {
+				statuses.add(CompletableFuture.completedFuture(HapStatus.SUCCESS));
+			}
+		}
+		for (WriteBatch batch: batches.values()) {
+			batch.dispatch();
+		}
+		// As with reads, a write that is not done by the deadline is reported as timed out rather than waited for
+		for (CompletableFuture<Integer> status: statuses) {
+			status.completeOnTimeout(HapStatus.OPERATION_TIMED_OUT, deadline, TimeUnit.MILLISECONDS);
+		}
+		CompletableFuture.allOf(statuses.toArray(new CompletableFuture<?>[statuses.size()])).join();
+		
+		boolean failed = false;
+		JsonArrayBuilder characteristics = Json.createArrayBuilder();
+		for (int i=0; i<statuses.size(); i++) {
+			JsonObject jsonCharacteristic = jsonCharacteristics.getJsonObject(i);
+			int aid = jsonCharacteristic.getInt("aid");
+			int iid = jsonCharacteristic.getInt("iid");
+			int status = statuses.get(i).join();
+			if (status == HapStatus.SUCCESS && jsonCharacteristic.containsKey("ev")) {
+				subscribe(aid, iid, jsonCharacteristic.getBoolean("ev"), connection);
+			}
+			failed |= status != HapStatus.SUCCESS;
+			characteristics.add(status(aid, iid, status));
+		}
+		if (!failed) {
+			return new HapJsonNoContentResponse();
+		}
+		try(ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+			Json.createWriter(baos).write(Json.createObjectBuilder().add("characteristics", characteristics.build()).build());
+			return new HapJsonMultiStatusResponse(baos.toByteArray());
+		}
+	}
+	
+	private void subscribe(int aid, int iid, boolean enable, HomekitClientConnection connection) {
+		Characteristic characteristic = registry.getCharacteristic(aid, iid);
+		if (characteristic instanceof EventableCharacteristic) {
+			if (enable) {
+				subscriptions.addSubscription(aid, iid, (EventableCharacteristic) characteristic, connection);
+			} else {
+				subscriptions.removeSubscription(aid, iid, connection);
+			}
+		}
+	}
+	
+	/**
+	 * The writes of one request to a single accessory. Batches of different accessories run concurrently on the write
+	 * executor, while the writes within a batch are applied in order.
+	 */
+	private class WriteBatch {
+		
+		private final int aid;
+		private final List<CharacteristicWrite> writes = new ArrayList<>();
+		private final List<CompletableFuture<Integer>> statuses = new ArrayList<>();
+		
+		WriteBatch(int aid) {
+			this.aid = aid;
+		}
+		
+		CompletableFuture<Integer> add(CharacteristicWrite write) {
+			CompletableFuture<Integer> status = new CompletableFuture<>();
+			writes.add(write);
+			statuses.add(status);
+			return status;
+		}
+		
+		void dispatch() {
+			HomekitAccessory accessory = registry.getAccessory(aid);
+			if (accessory instanceof BatchWritable) {
+				CompletableFuture.supplyAsync(() -> ((BatchWritable) accessory).writeBatch(writes), writeExecutor)
+					.thenCompose(future -> future)
+					.whenComplete((result, t) -> {
+						// The accessory sets the values itself, so their cached values are discarded here
+						for (CharacteristicWrite write: writes) {
+							if (write.getCharacteristic() instanceof BaseCharacteristic) {
+								((BaseCharacteristic<?>) write.getCharacteristic()).invalidateValue();
+							}
+						}
+						int status = t == null ? HapStatus.SUCCESS : statusOf(t);
+						for (CompletableFuture<Integer> write: statuses) {
+							write.complete(status);
+						}
+					});
+			} else {
+				CompletableFuture.runAsync(() -> {
+					for (int i=0; i<writes.size(); i++) {
+						statuses.get(i).complete(apply(writes.get(i)));
 					}
-				}
+				}, writeExecutor);
+			}
+		}
+		
+		private int apply(CharacteristicWrite write) {
+			try {
+				write.apply();
+				return HapStatus.SUCCESS;
+			} catch (Exception e) {
+				return statusOf(e);
+			}
+		}
+		
+		private int statusOf(Throwable t) {
+			if (t instanceof CompletionException && t.getCause() != null) {
+				t = t.getCause();
 			}
+			logger.error("Could not write to accessory " + aid, t);
+			return t instanceof IllegalArgumentException ? HapStatus.INVALID_VALUE : HapStatus.COMMUNICATION_FAILURE;
 		}
-		return new HapJsonNoContentResponse();
 	}
 
 }
@@ -1,35 +1,86 @@
 package com.beowulfe.hap.impl.json;
 
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java8.util.concurrent.CompletableFuture;
 
 import javax.json.Json;
-import javax.json.JsonArrayBuilder;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 
 import com.beowulfe.hap.characteristics.EventableCharacteristic;
 import com.beowulfe.hap.impl.http.HttpResponse;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 public class EventController {
 
+	private final static Logger logger = LoggerFactory.getLogger(EventController.class);
+
 	public HttpResponse getMessage(int accessoryId, int iid, EventableCharacteristic changed) throws Exception {
-		JsonArrayBuilder characteristics = Json.createArrayBuilder();
-		
+		return getMessage(getState(accessoryId, iid, changed));
+	}
+
+	/**
+	 * Reads the current value of the characteristic, falling back to its default if it cannot be read.
+	 * 
+	 * @return the characteristic as it appears in an event message.
+	 */
+	public JsonObject getState(int accessoryId, int iid, EventableCharacteristic characteristic) {
 		JsonObjectBuilder characteristicBuilder = Json.createObjectBuilder();
 		characteristicBuilder.add("aid", accessoryId);
 		characteristicBuilder.add("iid", iid);
-		changed.supplyValue(characteristicBuilder);
-		characteristics.add(characteristicBuilder.build());
-	
-		JsonObject data = Json.createObjectBuilder().add("characteristics", characteristics).build();
-		
-		try(ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-			Json.createWriter(baos).write(data);
-			byte[] dataBytes = baos.toByteArray();
-		
-			return new EventResponse(dataBytes);
+		characteristic.supplyValue(characteristicBuilder);
+		return characteristicBuilder.build();
+	}
+
+	/**
+	 * @param characteristic the result of {@link #getState(int, int, EventableCharacteristic)}.
+	 */
+	public HttpResponse getMessage(JsonObject characteristic) {
+		return new EventResponse(Collections.singletonList(characteristic));
+	}
+
+	/**
+	 * Builds a single message reporting all the changes, with the values they carry or, for those without, the current
+	 * values read from the characteristics. Characteristics that cannot be read are left out of the message.
+	 * 
+	 * @return a future that completes with the message, or with null if none of the values could be read.
+	 */
+	public CompletableFuture<HttpResponse> getMessage(Collection<CharacteristicEvent> events) {
+		List<CompletableFuture<JsonObject>> values = new ArrayList<>(events.size());
+		for (CharacteristicEvent event: events) {
+			JsonObjectBuilder characteristicBuilder = Json.createObjectBuilder()
+					.add("aid", event.getAccessoryId())
+					.add("iid", event.getIid());
+			if (event.getValue() != null) {
+				values.add(CompletableFuture.completedFuture(characteristicBuilder.add("value", event.getValue()).build()));
+				continue;
+			}
+			CompletableFuture<JsonObjectBuilder> value;
+			try {
+				value = event.getCharacteristic().supplyValueAsync(characteristicBuilder);
+			} catch (Exception e) {
+				value = new CompletableFuture<>();
+				value.completeExceptionally(e);
+			}
+			values.add(value.thenApply(JsonObjectBuilder::build).exceptionally(t -> {
+				logger.error("Could not read changed characteristic "+event.getAccessoryId()+"."+event.getIid(), t);
+				return null;
+			}));
 		}
-		
+		return CompletableFuture.allOf(values.toArray(new CompletableFuture<?>[values.size()])).thenApply(v -> {
+			List<JsonObject> characteristics = new ArrayList<>(values.size());
+			for (CompletableFuture<JsonObject> value: values) {
+				if (value.join() != null) {
+					characteristics.add(value.join());
+				}
+			}
+			return characteristics.isEmpty() ? null : new EventResponse(characteristics);
+		});
 	}
 
 }
@@ -1,14 +1,49 @@
 package com.beowulfe.hap.impl.json;
 
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
 
 public class EventResponse extends HapJsonResponse {
 
+	private final List<JsonObject> characteristics;
+
 	public EventResponse(byte[] body) {
 		super(body);
+		this.characteristics = null;
+	}
+	
+	/**
+	 * @param characteristics the aid, iid and value of each changed characteristic.
+	 */
+	public EventResponse(List<JsonObject> characteristics) {
+		super(serialize(characteristics));
+		this.characteristics = Collections.unmodifiableList(characteristics);
+	}
+	
+	/**
+	 * @return the changed characteristics, or null if the event was created from its serialized body.
+	 */
+	public List<JsonObject> getCharacteristics() {
+		return characteristics;
 	}
 	
 	@Override
 	public HttpVersion getVersion() {
 		return HttpVersion.EVENT_1_0;
 	}
+	
+	private static byte[] serialize(List<JsonObject> characteristics) {
+		JsonArrayBuilder array = Json.createArrayBuilder();
+		for (JsonObject characteristic: characteristics) {
+			array.add(characteristic);
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Json.createWriter(baos).write(Json.createObjectBuilder().add("characteristics", array).build());
+		return baos.toByteArray();
+	}
 }
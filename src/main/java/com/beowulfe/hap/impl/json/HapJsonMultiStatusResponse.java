@@ -0,0 +1,16 @@
+package com.beowulfe.hap.impl.json;
+
+/**
+ * A response listing the status of each characteristic, sent when some of them could not be read or written.
+ */
+class HapJsonMultiStatusResponse extends HapJsonResponse {
+
+	public HapJsonMultiStatusResponse(byte[] body) {
+		super(body);
+	}
+
+	@Override
+	public int getStatusCode() {
+		return 207;
+	}
+}
@@ -0,0 +1,15 @@
+package com.beowulfe.hap.impl.json;
+
+/**
+ * Status codes reported for individual characteristics in a multi-status response.
+ */
+final class HapStatus {
+
+	static final int SUCCESS = 0;
+	static final int COMMUNICATION_FAILURE = -70402;
+	static final int OPERATION_TIMED_OUT = -70408;
+	static final int RESOURCE_DOES_NOT_EXIST = -70409;
+	static final int INVALID_VALUE = -70410;
+
+	private HapStatus() {}
+}
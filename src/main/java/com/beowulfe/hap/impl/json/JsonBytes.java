@@ -0,0 +1,60 @@
+package com.beowulfe.hap.impl.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON tokens straight to a stream, escaping strings the same way the javax.json writer does.
+ */
+final class JsonBytes {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private JsonBytes() {}
+
+	static void writeString(OutputStream out, String value) throws IOException {
+		out.write(quote(value).getBytes(StandardCharsets.UTF_8));
+	}
+
+	static void writeAscii(OutputStream out, String token) throws IOException {
+		for (int i = 0; i < token.length(); i++) {
+			out.write(token.charAt(i));
+		}
+	}
+
+	private static String quote(String value) {
+		StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+			case '\\':
+				quoted.append('\\').append(c);
+				break;
+			case '\b':
+				quoted.append("\\b");
+				break;
+			case '\f':
+				quoted.append("\\f");
+				break;
+			case '\n':
+				quoted.append("\\n");
+				break;
+			case '\r':
+				quoted.append("\\r");
+				break;
+			case '\t':
+				quoted.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					quoted.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		return quoted.append('"').toString();
+	}
+}
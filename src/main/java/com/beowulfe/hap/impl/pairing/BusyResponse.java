@@ -0,0 +1,14 @@
+package com.beowulfe.hap.impl.pairing;
+
+/**
+ * Answers a pairing request with the busy error, without doing any of its work, when the accessory is handling as
+ * many handshakes as it can. The controller retries later.
+ */
+public class BusyResponse extends PairingErrorResponse {
+
+	private static final int ERROR_BUSY = 7;
+
+	public BusyResponse(byte[] requestBody) {
+		super(requestBody, ERROR_BUSY);
+	}
+}
@@ -10,8 +10,6 @@ import com.beowulfe.hap.HomekitAuthInfo;
 import com.beowulfe.hap.impl.crypto.*;
 import com.beowulfe.hap.impl.http.HttpResponse;
 import com.beowulfe.hap.impl.pairing.PairSetupRequest.Stage3Request;
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
 import com.beowulfe.hap.impl.pairing.PairingListener;
 
 class FinalPairHandler {
@@ -19,13 +17,15 @@ class FinalPairHandler {
 	private final byte[] k;
 	private final HomekitAuthInfo authInfo;
 	private final PairingListener pairingListener;
+	private final PairingKeyCache keys;
 	
 	private byte[] hkdf_enc_key;
 	
-	public FinalPairHandler(byte[] k, HomekitAuthInfo authInfo, PairingListener pairingListener) {
+	public FinalPairHandler(byte[] k, HomekitAuthInfo authInfo, PairingListener pairingListener, PairingKeyCache keys) {
 		this.k = k;
 		this.authInfo = authInfo;
 		this.pairingListener = pairingListener;
+		this.keys = keys;
 	}
 
 	public HttpResponse handle(PairSetupRequest req) throws Exception {
@@ -42,7 +42,7 @@ class FinalPairHandler {
 		ChachaDecoder chacha = new ChachaDecoder(key, "PS-Msg05".getBytes(StandardCharsets.UTF_8));
 		byte[] plaintext = chacha.decodeCiphertext(req.getAuthTagData(), req.getMessageData());
 		
-		DecodeResult d = TypeLengthValueUtils.decode(plaintext);
+		Tlv8Reader d = Tlv8Reader.of(plaintext);
 		byte[] username = d.getBytes(MessageType.USERNAME);
 		byte[] ltpk = d.getBytes(MessageType.PUBLIC_KEY);
 		byte[] proof = d.getBytes(MessageType.SIGNATURE);
@@ -73,26 +73,28 @@ class FinalPairHandler {
 		byte[] okm = new byte[32];
 		hkdf.generateBytes(okm, 0, 32);
 		
-		EdsaSigner signer = new EdsaSigner(authInfo.getPrivateKey());
+		EdsaSigner signer = keys.getSigner();
 		
 		byte[] material = ByteUtils.joinBytes(okm, authInfo.getMac().getBytes(StandardCharsets.UTF_8), signer.getPublicKey());
 		
 		byte[] proof = signer.sign(material);
 		
-		Encoder encoder = TypeLengthValueUtils.getEncoder();
-		encoder.add(MessageType.USERNAME, authInfo.getMac().getBytes(StandardCharsets.UTF_8));
-		encoder.add(MessageType.PUBLIC_KEY, signer.getPublicKey());
-		encoder.add(MessageType.SIGNATURE, proof);
-		byte[] plaintext = encoder.toByteArray();
+		byte[] mac = authInfo.getMac().getBytes(StandardCharsets.UTF_8);
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(mac.length)
+				+ Tlv8Writer.length(signer.getPublicKey().length) + Tlv8Writer.length(proof.length));
+		writer.add(MessageType.USERNAME, mac);
+		writer.add(MessageType.PUBLIC_KEY, signer.getPublicKey());
+		writer.add(MessageType.SIGNATURE, proof);
+		byte[] plaintext = writer.toByteArray();
 	
 		ChachaEncoder chacha = new ChachaEncoder(hkdf_enc_key, "PS-Msg06".getBytes(StandardCharsets.UTF_8));
 		byte[] ciphertext = chacha.encodeCiphertext(plaintext);
 		
-		encoder = TypeLengthValueUtils.getEncoder();
-		encoder.add(MessageType.STATE, (short) 6);
-		encoder.add(MessageType.ENCRYPTED_DATA, ciphertext);
+		writer = new Tlv8Writer(Tlv8Writer.length(1) + Tlv8Writer.length(ciphertext.length));
+		writer.add(MessageType.STATE, 6);
+		writer.add(MessageType.ENCRYPTED_DATA, ciphertext);
 		
-		return new PairingResponse(encoder.toByteArray());
+		return new PairingResponse(writer.toByteArray());
 	}
 
 }
@@ -0,0 +1,96 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+
+/**
+ * Modular exponentiation of a fixed base, using a Lim-Lee comb table built once for the base and modulus. Products are
+ * reduced with Barrett reduction against a precomputed reciprocal of the modulus.
+ *
+ * The exponent is split into {@link #ROWS} rows, each split into {@link #BLOCKS} blocks, and takes one squaring and
+ * {@link #BLOCKS} multiplications per bit of a block. For a 3072 bit exponent that is 96 squarings and 384
+ * multiplications, where modPow needs over 3000 squarings.
+ *
+ * This is not constant time, any more than {@link BigInteger#modPow(BigInteger, BigInteger)} is: table entries are
+ * looked up by exponent bits, BigInteger arithmetic takes time depending on its operands, and the reduction ends
+ * with a variable number of subtractions. It is only used for the single-use server values of pair-setup.
+ */
+final class FixedBaseModPow {
+
+	private static final int ROWS = 8;
+	private static final int BLOCKS = 4;
+
+	private final BigInteger base;
+	private final BigInteger modulus;
+	private final int exponentBits;
+	private final int modulusBits;
+	private final BigInteger reciprocal;
+	private final int rowBits;
+	private final int blockBits;
+	/**
+	 * table[j][p] is the product of base^(2^(i*rowBits + j*blockBits)) over the rows i set in p.
+	 */
+	private final BigInteger[][] table;
+
+	/**
+	 * @param exponentBits longest exponent handled from the table. Longer exponents fall back to modPow.
+	 */
+	FixedBaseModPow(BigInteger base, BigInteger modulus, int exponentBits) {
+		this.base = base;
+		this.modulus = modulus;
+		this.exponentBits = exponentBits;
+		modulusBits = modulus.bitLength();
+		reciprocal = BigInteger.ONE.shiftLeft(2 * modulusBits).divide(modulus);
+		blockBits = (exponentBits + ROWS * BLOCKS - 1) / (ROWS * BLOCKS);
+		rowBits = blockBits * BLOCKS;
+
+		BigInteger[] powers = new BigInteger[ROWS * rowBits];
+		powers[0] = base.mod(modulus);
+		for (int k = 1; k < powers.length; k++) {
+			powers[k] = reduce(powers[k - 1].multiply(powers[k - 1]));
+		}
+		table = new BigInteger[BLOCKS][1 << ROWS];
+		for (int j = 0; j < BLOCKS; j++) {
+			table[j][0] = BigInteger.ONE;
+			for (int p = 1; p < 1 << ROWS; p++) {
+				int low = Integer.lowestOneBit(p);
+				BigInteger power = powers[Integer.numberOfTrailingZeros(p) * rowBits + j * blockBits];
+				table[j][p] = p == low ? power : reduce(table[j][p ^ low].multiply(power));
+			}
+		}
+	}
+
+	/**
+	 * @return base^exponent mod modulus.
+	 */
+	BigInteger pow(BigInteger exponent) {
+		if (exponent.signum() < 0 || exponent.bitLength() > exponentBits) {
+			return base.modPow(exponent, modulus);
+		}
+		BigInteger result = BigInteger.ONE;
+		for (int k = blockBits - 1; k >= 0; k--) {
+			result = reduce(result.multiply(result));
+			for (int j = BLOCKS - 1; j >= 0; j--) {
+				int column = 0;
+				for (int i = 0; i < ROWS; i++) {
+					if (exponent.testBit(i * rowBits + j * blockBits + k)) {
+						column |= 1 << i;
+					}
+				}
+				result = reduce(result.multiply(table[j][column]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Barrett reduction of a product of two residues.
+	 */
+	private BigInteger reduce(BigInteger product) {
+		BigInteger quotient = product.shiftRight(modulusBits - 1).multiply(reciprocal).shiftRight(modulusBits + 1);
+		BigInteger remainder = product.subtract(quotient.multiply(modulus));
+		while (remainder.compareTo(modulus) >= 0) {
+			remainder = remainder.subtract(modulus);
+		}
+		return remainder;
+	}
+}
@@ -172,6 +172,32 @@ public class HomekitSRP6ServerSession extends SRP6Session {
 	 */
 	public BigInteger step1(final String userID, final BigInteger s, final BigInteger v) {
 	
+		BigInteger b = HomekitSRP6Routines.generatePrivateValue(config.N, random);
+		return step1(userID, s, v, b, config.g.modPow(b, config.N));
+	}
+	
+	
+	/**
+	 * Increments this SRP-6a authentication session to 
+	 * {@link State#STEP_1} using a server private value 'b' generated in
+	 * advance, together with 'g^b mod N'. Only the cheap 'k*v' term of the
+	 * server public value remains to be computed.
+	 *
+	 * @param userID The identity 'I' of the authenticating user. Must not 
+	 *               be {@code null} or empty.
+	 * @param s      The password salt 's'. Must not be {@code null}.
+	 * @param v      The password verifier 'v'. Must not be {@code null}.
+	 * @param b      The server private value 'b', never used before.
+	 * @param gb     'g^b mod N' for the private value.
+	 *
+	 * @return The server public value 'B'.
+	 *
+	 * @throws IllegalStateException If the mehod is invoked in a state 
+	 *                               other than {@link State#INIT}.
+	 */
+	public BigInteger step1(final String userID, final BigInteger s, final BigInteger v,
+			final BigInteger b, final BigInteger gb) {
+	
 		// Check arguments
 		
 		if (userID == null || userID.trim().isEmpty())
@@ -200,10 +226,9 @@ public class HomekitSRP6ServerSession extends SRP6Session {
 		k = SRP6Routines.computeK(digest, config.N, config.g);
 		digest.reset();
 		
-		b = HomekitSRP6Routines.generatePrivateValue(config.N, random);
-		digest.reset();
+		this.b = b;
 		
-		B = SRP6Routines.computePublicServerValue(config.N, config.g, k, v, b);
+		B = gb.add(v.multiply(k)).mod(config.N);
 
 		state = State.STEP_1;
 		
@@ -1,9 +1,8 @@
 package com.beowulfe.hap.impl.pairing;
 
+import java.io.IOException;
 import java.math.BigInteger;
 
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
-
 abstract class PairSetupRequest {
 	
 	private final static short VALUE_STAGE_1 = 1;
@@ -11,8 +10,8 @@ abstract class PairSetupRequest {
 	private final static short VALUE_STAGE_3 = 5;
 	
 	public static PairSetupRequest of(byte[] content) throws Exception {
-		DecodeResult d = TypeLengthValueUtils.decode(content);
-		short stage = d.getByte(MessageType.STATE);
+		Tlv8Reader d = Tlv8Reader.of(content);
+		int stage = d.getByte(MessageType.STATE);
 		switch(stage) {
 		case VALUE_STAGE_1:
 			return new Stage1Request();
@@ -42,7 +41,7 @@ abstract class PairSetupRequest {
 		private final BigInteger a;
 		private final BigInteger m1;
 		
-		public Stage2Request(DecodeResult d) {
+		public Stage2Request(Tlv8Reader d) {
 			a = d.getBigInt(MessageType.PUBLIC_KEY);
 			m1 = d.getBigInt(MessageType.PROOF);
 		}
@@ -67,11 +66,15 @@ abstract class PairSetupRequest {
 		private final byte[] messageData;
 		private final byte[] authTagData;
 	
-		public Stage3Request(DecodeResult d) {
-			messageData = new byte[d.getLength(MessageType.ENCRYPTED_DATA) - 16];
+		public Stage3Request(Tlv8Reader d) throws IOException {
+			int length = d.getLength(MessageType.ENCRYPTED_DATA);
+			if (length < 16) {
+				throw new IOException("Missing or short encrypted data");
+			}
+			messageData = new byte[length - 16];
 			authTagData = new byte[16];
-			d.getBytes(MessageType.ENCRYPTED_DATA, messageData, 0);
-			d.getBytes(MessageType.ENCRYPTED_DATA, authTagData, messageData.length);
+			d.getBytes(MessageType.ENCRYPTED_DATA, 0, messageData, 0, messageData.length);
+			d.getBytes(MessageType.ENCRYPTED_DATA, messageData.length, authTagData, 0, authTagData.length);
 		}
 
 		public byte[] getMessageData() {
@@ -1,11 +1,14 @@
 package com.beowulfe.hap.impl.pairing;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 
 import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.macs.HMac;
 import org.bouncycastle.crypto.params.HKDFParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,8 +19,6 @@ import com.beowulfe.hap.impl.http.HttpRequest;
 import com.beowulfe.hap.impl.http.HttpResponse;
 import com.beowulfe.hap.impl.pairing.PairVerificationRequest.Stage1Request;
 import com.beowulfe.hap.impl.pairing.PairVerificationRequest.Stage2Request;
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
 import com.beowulfe.hap.impl.responses.NotFoundResponse;
 import com.beowulfe.hap.impl.responses.OkResponse;
 
@@ -30,19 +31,27 @@ public class PairVerificationManager {
 
 	private final HomekitAuthInfo authInfo;
 	private final HomekitRegistry registry;
+	private final PairingKeyCache keys;
 	
 	private byte[] hkdfKey;
 	private byte[] clientPublicKey;
 	private byte[] publicKey;
 	private byte[] sharedSecret;
 	
-	public PairVerificationManager(HomekitAuthInfo authInfo, HomekitRegistry registry) {
+	public PairVerificationManager(HomekitAuthInfo authInfo, HomekitRegistry registry, PairingKeyCache keys) {
 		this.authInfo = authInfo;
 		this.registry = registry;
+		this.keys = keys;
 	}
 
 	public HttpResponse handle(HttpRequest rawRequest) throws Exception {
-		PairVerificationRequest request = PairVerificationRequest.of(rawRequest.getBody());
+		PairVerificationRequest request;
+		try {
+			request = PairVerificationRequest.of(rawRequest.getBody());
+		} catch (IOException e) {
+			logger.warn("Malformed pair verification request for "+registry.getLabel()+": "+e.getMessage());
+			return new PairingErrorResponse(rawRequest.getBody(), PairingErrorResponse.ERROR_AUTHENTICATION);
+		}
 		switch(request.getStage()) {
 		case ONE:
 			return stage1((Stage1Request) request);
@@ -56,79 +65,150 @@ public class PairVerificationManager {
 	}
 
 	private HttpResponse stage1(Stage1Request request) throws Exception {
-		logger.debug("Starting pair verification for "+registry.getLabel());
 		clientPublicKey = request.getClientPublicKey();
-		publicKey = new byte[32];
-		byte[] privateKey = new byte[32];
-		getSecureRandom().nextBytes(privateKey);
-		Curve25519.keygen(publicKey, null, privateKey);
+		if (request.isResume()) {
+			HttpResponse resumed = resume(request);
+			if (resumed != null) {
+				return resumed;
+			}
+			logger.debug("Could not resume session, falling back to pair verification for "+registry.getLabel());
+		}
+		logger.debug("Starting pair verification for "+registry.getLabel());
+		EphemeralKeyPool.KeyPair keyPair = keys.takeEphemeralKey();
+		publicKey = keyPair.getPublicKey();
 		
 		sharedSecret = new byte[32];
-		Curve25519.curve(sharedSecret, privateKey, clientPublicKey);
+		Curve25519.curve(sharedSecret, keyPair.getPrivateKey(), clientPublicKey);
 		
 		byte[] material = ByteUtils.joinBytes(publicKey, authInfo.getMac().getBytes(StandardCharsets.UTF_8),
 				clientPublicKey);
 		
-		byte[] proof = new EdsaSigner(authInfo.getPrivateKey()).sign(material);
+		byte[] proof = keys.getSigner().sign(material);
 		
-		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA512Digest());
-		hkdf.init(new HKDFParameters(sharedSecret, "Pair-Verify-Encrypt-Salt".getBytes(StandardCharsets.UTF_8),
-				"Pair-Verify-Encrypt-Info".getBytes(StandardCharsets.UTF_8)));
-		hkdfKey = new byte[32];
-		hkdf.generateBytes(hkdfKey, 0, 32);
+		hkdfKey = expand(extract(bytes("Pair-Verify-Encrypt-Salt"), sharedSecret), "Pair-Verify-Encrypt-Info", 32);
 		
-		Encoder encoder = TypeLengthValueUtils.getEncoder();
-		encoder.add(MessageType.USERNAME, authInfo.getMac().getBytes(StandardCharsets.UTF_8));
-		encoder.add(MessageType.SIGNATURE, proof);
-		byte[] plaintext = encoder.toByteArray();
+		byte[] mac = authInfo.getMac().getBytes(StandardCharsets.UTF_8);
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(mac.length) + Tlv8Writer.length(proof.length));
+		writer.add(MessageType.USERNAME, mac);
+		writer.add(MessageType.SIGNATURE, proof);
+		byte[] plaintext = writer.toByteArray();
 		
 		ChachaEncoder chacha = new ChachaEncoder(hkdfKey, "PV-Msg02".getBytes(StandardCharsets.UTF_8));
 		byte[] ciphertext = chacha.encodeCiphertext(plaintext);
 		
-		encoder = TypeLengthValueUtils.getEncoder();
-		encoder.add(MessageType.STATE, (short) 2);
-		encoder.add(MessageType.ENCRYPTED_DATA, ciphertext);
-		encoder.add(MessageType.PUBLIC_KEY, publicKey);
-		return new PairingResponse(encoder.toByteArray());
+		writer = new Tlv8Writer(Tlv8Writer.length(1) + Tlv8Writer.length(ciphertext.length)
+				+ Tlv8Writer.length(publicKey.length));
+		writer.add(MessageType.STATE, 2);
+		writer.add(MessageType.ENCRYPTED_DATA, ciphertext);
+		writer.add(MessageType.PUBLIC_KEY, publicKey);
+		return new PairingResponse(writer.toByteArray());
 	}
 	
 	private HttpResponse stage2(Stage2Request request) throws Exception {
 		ChachaDecoder chacha = new ChachaDecoder(hkdfKey, "PV-Msg03".getBytes(StandardCharsets.UTF_8));
 		byte[] plaintext = chacha.decodeCiphertext(request.getAuthTagData(), request.getMessageData());
 		
-		DecodeResult d = TypeLengthValueUtils.decode(plaintext);
+		Tlv8Reader d = Tlv8Reader.of(plaintext);
 		byte[] clientUsername = d.getBytes(MessageType.USERNAME);
 		byte[] clientSignature = d.getBytes(MessageType.SIGNATURE);
 		
 		byte[] material = ByteUtils.joinBytes(clientPublicKey, clientUsername, publicKey);
 		
-		byte[] clientLtpk = authInfo.getUserPublicKey(authInfo.getMac()+new String(clientUsername, StandardCharsets.UTF_8));
+		String username = authInfo.getMac()+new String(clientUsername, StandardCharsets.UTF_8);
+		byte[] clientLtpk = authInfo.getUserPublicKey(username);
 		if (clientLtpk == null) {
 			throw new Exception("Unknown user: "+new String(clientUsername, StandardCharsets.UTF_8));
 		}
 		
-		Encoder encoder = TypeLengthValueUtils.getEncoder();
-		if (new EdsaVerifier(clientLtpk).verify(material, clientSignature)) {
-			encoder.add(MessageType.STATE, (short) 4);
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(1));
+		if (keys.getVerifier(clientLtpk).verify(material, clientSignature)) {
+			writer.add(MessageType.STATE, 4);
 			logger.debug("Completed pair verification for "+registry.getLabel());
-			return new UpgradeResponse(encoder.toByteArray(), createKey("Control-Write-Encryption-Key"),
-					createKey("Control-Read-Encryption-Key"));
+			byte[] sessionId = expand(extract(bytes("Pair-Verify-ResumeSessionID-Salt"), sharedSecret),
+					"Pair-Verify-ResumeSessionID-Info", ResumeSessionCache.SESSION_ID_LENGTH);
+			keys.getResumeSessions().put(sessionId, sharedSecret, username);
+			return createUpgradeResponse(writer.toByteArray());
 		} else {
-			encoder.add(MessageType.ERROR, (short) 4);
+			writer.add(MessageType.ERROR, 4);
 			logger.warn("Invalid signature. Could not pair "+registry.getLabel());
-			return new OkResponse(encoder.toByteArray());
+			return new OkResponse(writer.toByteArray());
+		}
+	}
+	
+	/**
+	 * Pair Resume: derives new session keys from the secret of a previous session using only HKDF.
+	 * 
+	 * @return the upgrade response, or null if the session cannot be resumed and a full verify has to follow.
+	 */
+	private HttpResponse resume(Stage1Request request) throws Exception {
+		ResumeSessionCache sessions = keys.getResumeSessions();
+		ResumeSessionCache.Session session = sessions.get(request.getResumeSessionId());
+		if (session == null) {
+			return null;
+		}
+		if (authInfo.getUserPublicKey(session.getUsername()) == null) {
+			sessions.remove(request.getResumeSessionId(), session);
+			return null;
 		}
+		byte[] prk = extract(ByteUtils.joinBytes(clientPublicKey, request.getResumeSessionId()), session.getSharedSecret());
+		try {
+			new ChachaDecoder(expand(prk, "Pair-Resume-Request-Info", 32), bytes("PR-Msg01"))
+					.decodeCiphertext(request.getResumeAuthTag(), new byte[0]);
+		} catch (IOException e) {
+			logger.warn("Invalid resume request for "+registry.getLabel());
+			return null;
+		}
+		if (!sessions.remove(request.getResumeSessionId(), session)) {
+			// Resumed by a concurrent request
+			return null;
+		}
+		
+		byte[] sessionId = new byte[ResumeSessionCache.SESSION_ID_LENGTH];
+		getSecureRandom().nextBytes(sessionId);
+		prk = extract(ByteUtils.joinBytes(clientPublicKey, sessionId), session.getSharedSecret());
+		byte[] authTag = new ChachaEncoder(expand(prk, "Pair-Resume-Response-Info", 32), bytes("PR-Msg02"))
+				.encodeCiphertext(new byte[0]);
+		sharedSecret = expand(prk, "Pair-Resume-Shared-Secret-Info", 32);
+		sessions.put(sessionId, sharedSecret, session.getUsername());
+		
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(1) * 2 + Tlv8Writer.length(sessionId.length)
+				+ Tlv8Writer.length(authTag.length));
+		writer.add(MessageType.STATE, 2);
+		writer.add(MessageType.METHOD, 6);
+		writer.add(MessageType.SESSION_ID, sessionId);
+		writer.add(MessageType.ENCRYPTED_DATA, authTag);
+		logger.debug("Resumed session for "+registry.getLabel());
+		return createUpgradeResponse(writer.toByteArray());
+	}
+	
+	private UpgradeResponse createUpgradeResponse(byte[] body) {
+		// Both session keys share the salt and secret, so the HKDF extract step is only done once
+		byte[] prk = extract(bytes("Control-Salt"), sharedSecret);
+		return new UpgradeResponse(body, expand(prk, "Control-Write-Encryption-Key", 32),
+				expand(prk, "Control-Read-Encryption-Key", 32));
+	}
+	
+	static byte[] extract(byte[] salt, byte[] secret) {
+		HMac hmac = new HMac(new SHA512Digest());
+		hmac.init(new KeyParameter(salt));
+		hmac.update(secret, 0, secret.length);
+		byte[] prk = new byte[hmac.getMacSize()];
+		hmac.doFinal(prk, 0);
+		return prk;
 	}
 	
-	private byte[] createKey(String info) {
+	static byte[] expand(byte[] prk, String info, int length) {
 		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA512Digest());
-		hkdf.init(new HKDFParameters(sharedSecret, "Control-Salt".getBytes(StandardCharsets.UTF_8),
-				info.getBytes(StandardCharsets.UTF_8)));
-		byte[] key = new byte[32];
-		hkdf.generateBytes(key, 0, 32);
+		hkdf.init(HKDFParameters.skipExtractParameters(prk, bytes(info)));
+		byte[] key = new byte[length];
+		hkdf.generateBytes(key, 0, length);
 		return key;
 	}
 	
+	private static byte[] bytes(String label) {
+		return label.getBytes(StandardCharsets.UTF_8);
+	}
+	
 	private static SecureRandom getSecureRandom() {
 		if (secureRandom == null) {
 			synchronized(PairVerificationManager.class) {
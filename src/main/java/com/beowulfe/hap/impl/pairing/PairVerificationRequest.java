@@ -1,16 +1,16 @@
 package com.beowulfe.hap.impl.pairing;
 
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
-
+import java.io.IOException;
 
 abstract class PairVerificationRequest {
 	
 	private final static short VALUE_STAGE_1 = 1;
 	private final static short VALUE_STAGE_2 = 3;
+	private final static short METHOD_PAIR_RESUME = 6;
 
 	static PairVerificationRequest of(byte[] content) throws Exception {
-		DecodeResult d = TypeLengthValueUtils.decode(content);
-		short stage = d.getByte(MessageType.STATE);
+		Tlv8Reader d = Tlv8Reader.of(content);
+		int stage = d.getByte(MessageType.STATE);
 		switch(stage) {
 		case VALUE_STAGE_1:
 			return new Stage1Request(d);
@@ -28,15 +28,43 @@ abstract class PairVerificationRequest {
 	static class Stage1Request extends PairVerificationRequest {
 
 		private final byte[] clientPublicKey;
+		private final byte[] resumeSessionId;
+		private final byte[] resumeAuthTag;
 		
-		public Stage1Request(DecodeResult d) {
+		public Stage1Request(Tlv8Reader d) {
 			clientPublicKey = d.getBytes(MessageType.PUBLIC_KEY);
+			if (d.getByte(MessageType.METHOD) == METHOD_PAIR_RESUME) {
+				resumeSessionId = d.getBytes(MessageType.SESSION_ID);
+				resumeAuthTag = d.getBytes(MessageType.ENCRYPTED_DATA);
+			} else {
+				resumeSessionId = null;
+				resumeAuthTag = null;
+			}
 		}
 
 		public byte[] getClientPublicKey() {
 			return clientPublicKey;
 		}
 		
+		/**
+		 * @return whether the controller asks to resume a previous session rather than run a full verify.
+		 */
+		public boolean isResume() {
+			return resumeSessionId != null && resumeSessionId.length == ResumeSessionCache.SESSION_ID_LENGTH
+					&& resumeAuthTag != null && resumeAuthTag.length == 16;
+		}
+
+		public byte[] getResumeSessionId() {
+			return resumeSessionId;
+		}
+
+		/**
+		 * @return the authentication tag of the empty message encrypted with the resume request key.
+		 */
+		public byte[] getResumeAuthTag() {
+			return resumeAuthTag;
+		}
+		
 		@Override
 		Stage getStage() {
 			return Stage.ONE;
@@ -49,11 +77,15 @@ abstract class PairVerificationRequest {
 		private final byte[] messageData;
 		private final byte[] authTagData;
 	
-		public Stage2Request(DecodeResult d) {
-			messageData = new byte[d.getLength(MessageType.ENCRYPTED_DATA) - 16];
+		public Stage2Request(Tlv8Reader d) throws IOException {
+			int length = d.getLength(MessageType.ENCRYPTED_DATA);
+			if (length < 16) {
+				throw new IOException("Missing or short encrypted data");
+			}
+			messageData = new byte[length - 16];
 			authTagData = new byte[16];
-			d.getBytes(MessageType.ENCRYPTED_DATA, messageData, 0);
-			d.getBytes(MessageType.ENCRYPTED_DATA, authTagData, messageData.length);
+			d.getBytes(MessageType.ENCRYPTED_DATA, 0, messageData, 0, messageData.length);
+			d.getBytes(MessageType.ENCRYPTED_DATA, messageData.length, authTagData, 0, authTagData.length);
 		}
 
 		public byte[] getMessageData() {
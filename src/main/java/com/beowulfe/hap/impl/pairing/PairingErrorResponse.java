@@ -0,0 +1,28 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.io.IOException;
+
+/**
+ * Answers a pairing request with a TLV8 error code, reported in the state following the request's.
+ */
+public class PairingErrorResponse extends PairingResponse {
+
+	static final int ERROR_AUTHENTICATION = 2;
+
+	public PairingErrorResponse(byte[] requestBody, int error) {
+		super(body(requestBody, error));
+	}
+
+	private static byte[] body(byte[] requestBody, int error) {
+		int state;
+		try {
+			state = Tlv8Reader.of(requestBody).getByte(MessageType.STATE);
+		} catch (IOException e) {
+			state = -1;
+		}
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(1) * 2);
+		writer.add(MessageType.STATE, state < 0 ? 2 : state + 1);
+		writer.add(MessageType.ERROR, error);
+		return writer.toByteArray();
+	}
+}
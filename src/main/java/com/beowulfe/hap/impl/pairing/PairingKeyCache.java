@@ -0,0 +1,144 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.beowulfe.hap.HomekitAuthInfo;
+import com.beowulfe.hap.impl.crypto.EdsaSigner;
+import com.beowulfe.hap.impl.crypto.EdsaVerifier;
+import com.beowulfe.hap.impl.crypto.EphemeralKeyPool;
+
+/**
+ * Key material shared by all connections of a {@link com.beowulfe.hap.HomekitRoot}, so that a reconnecting controller
+ * does not pay for deriving the accessory's Ed25519 public key, decoding its own long term public key and generating
+ * an ephemeral Curve25519 key pair on every pair-verify. Also holds the secrets of verified sessions for Pair Resume,
+ * and the SRP verifier and precomputed server values for pair-setup.
+ */
+public class PairingKeyCache {
+
+	/**
+	 * HomeKit accessories support up to 16 paired controllers.
+	 */
+	private static final int MAX_VERIFIERS = 16;
+	private static final int EPHEMERAL_KEYS = 4;
+	private static final int RESUME_SESSIONS = 64;
+	private static final long RESUME_TTL_MINUTES = 15;
+	private static final int SRP_SERVER_VALUES = 2;
+
+	private final HomekitAuthInfo authInfo;
+	private final EphemeralKeyPool ephemeralKeys;
+	private final SrpServerValuePool srpServerValues;
+	private final Map<ByteBuffer, EdsaVerifier> verifiers = new LinkedHashMap<ByteBuffer, EdsaVerifier>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ByteBuffer, EdsaVerifier> eldest) {
+			return size() > MAX_VERIFIERS;
+		}
+	};
+	private final ResumeSessionCache resumeSessions = new ResumeSessionCache(RESUME_SESSIONS, RESUME_TTL_MINUTES,
+			TimeUnit.MINUTES);
+	private volatile Identity identity;
+	private volatile SrpVerifier srpVerifier;
+
+	public PairingKeyCache(HomekitAuthInfo authInfo) {
+		this(authInfo, EPHEMERAL_KEYS);
+	}
+
+	PairingKeyCache(HomekitAuthInfo authInfo, int ephemeralKeys) {
+		this(authInfo, ephemeralKeys, ephemeralKeys > 0 ? SRP_SERVER_VALUES : 0);
+	}
+
+	PairingKeyCache(HomekitAuthInfo authInfo, int ephemeralKeys, int srpServerValues) {
+		this.authInfo = authInfo;
+		this.ephemeralKeys = new EphemeralKeyPool(ephemeralKeys);
+		this.srpServerValues = new SrpServerValuePool(srpServerValues);
+	}
+
+	/**
+	 * @return a signer for the accessory's long term key. Rebuilt only if the private key supplied by the
+	 * 	{@link HomekitAuthInfo} changes.
+	 */
+	public EdsaSigner getSigner() {
+		byte[] privateKey = authInfo.getPrivateKey();
+		Identity current = identity;
+		if (current == null || !Arrays.equals(current.privateKey, privateKey)) {
+			current = new Identity(privateKey.clone(), new EdsaSigner(privateKey));
+			identity = current;
+		}
+		return current.signer;
+	}
+
+	/**
+	 * @param ltpk a controller's long term public key, already looked up from the {@link HomekitAuthInfo}.
+	 * @return a verifier for signatures made with the key.
+	 */
+	public EdsaVerifier getVerifier(byte[] ltpk) {
+		ByteBuffer key = ByteBuffer.wrap(ltpk.clone());
+		synchronized(verifiers) {
+			EdsaVerifier verifier = verifiers.get(key);
+			if (verifier == null) {
+				verifier = new EdsaVerifier(ltpk);
+				verifiers.put(key, verifier);
+			}
+			return verifier;
+		}
+	}
+
+	/**
+	 * @return an ephemeral key pair for a single pair-verify.
+	 */
+	public EphemeralKeyPool.KeyPair takeEphemeralKey() {
+		return ephemeralKeys.take();
+	}
+
+	/**
+	 * @return the SRP verifier for the setup code and salt. Recomputed only when either differs from the previous
+	 * 	call, which happens when the {@link HomekitAuthInfo} changes them.
+	 */
+	BigInteger getSrpVerifier(BigInteger salt, String pin) {
+		SrpVerifier current = srpVerifier;
+		if (current == null || !current.salt.equals(salt) || !current.pin.equals(pin)) {
+			current = new SrpVerifier(salt, pin, SrpHandler.generateVerifier(salt, pin));
+			srpVerifier = current;
+		}
+		return current.verifier;
+	}
+
+	/**
+	 * @return a server private value and its 'g^b mod N' for a single pair-setup.
+	 */
+	SrpServerValuePool.ServerValue takeSrpServerValue() {
+		return srpServerValues.take();
+	}
+
+	ResumeSessionCache getResumeSessions() {
+		return resumeSessions;
+	}
+
+	private static class Identity {
+
+		private final byte[] privateKey;
+		private final EdsaSigner signer;
+
+		Identity(byte[] privateKey, EdsaSigner signer) {
+			this.privateKey = privateKey;
+			this.signer = signer;
+		}
+	}
+
+	private static class SrpVerifier {
+
+		private final BigInteger salt;
+		private final String pin;
+		private final BigInteger verifier;
+
+		SrpVerifier(BigInteger salt, String pin, BigInteger verifier) {
+			this.salt = salt;
+			this.pin = pin;
+			this.verifier = verifier;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package com.beowulfe.hap.impl.pairing;
 
+import java.io.IOException;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,21 +20,30 @@ public class PairingManager {
 	private final HomekitAuthInfo authInfo;
 	private final HomekitRegistry registry;
 	private final PairingListener pairingListener;
+	private final PairingKeyCache keys;
 	
 	private SrpHandler srpHandler;
 	
-	public PairingManager(HomekitAuthInfo authInfo, HomekitRegistry registry, PairingListener pairingListener) {
+	public PairingManager(HomekitAuthInfo authInfo, HomekitRegistry registry, PairingListener pairingListener,
+			PairingKeyCache keys) {
 		this.authInfo = authInfo;
 		this.registry = registry;
 		this.pairingListener = pairingListener;
+		this.keys = keys;
 	}
 
 	public HttpResponse handle(HttpRequest httpRequest) throws Exception {
-		PairSetupRequest req = PairSetupRequest.of(httpRequest.getBody());
+		PairSetupRequest req;
+		try {
+			req = PairSetupRequest.of(httpRequest.getBody());
+		} catch (IOException e) {
+			logger.warn("Malformed pair setup request for "+registry.getLabel()+": "+e.getMessage());
+			return new PairingErrorResponse(httpRequest.getBody(), PairingErrorResponse.ERROR_AUTHENTICATION);
+		}
 		
 		if (req.getStage() == Stage.ONE)  {
 			logger.info("Starting pair for "+registry.getLabel());
-			srpHandler = new SrpHandler(authInfo.getPin(), authInfo.getSalt());
+			srpHandler = new SrpHandler(authInfo.getPin(), authInfo.getSalt(), keys);
 			return srpHandler.handle(req);
 		} else if (req.getStage() == Stage.TWO) {
 			logger.debug("Entering second stage of pair for "+registry.getLabel());
@@ -54,7 +65,7 @@ public class PairingManager {
 				logger.warn("Received unexpected stage 3 request for "+registry.getLabel());
 				return new UnauthorizedResponse();
 			} else {
-				FinalPairHandler handler = new FinalPairHandler(srpHandler.getK(), authInfo, pairingListener);
+				FinalPairHandler handler = new FinalPairHandler(srpHandler.getK(), authInfo, pairingListener, keys);
 				try {
 					return handler.handle(req);
 				} catch (Exception e) {
@@ -6,7 +6,6 @@ import java.nio.charset.StandardCharsets;
 import com.beowulfe.hap.HomekitAuthInfo;
 import com.beowulfe.hap.impl.http.HttpRequest;
 import com.beowulfe.hap.impl.http.HttpResponse;
-import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
 import com.beowulfe.hap.impl.pairing.PairingListener;
 
 public class PairingUpdateController {
@@ -20,7 +19,7 @@ public class PairingUpdateController {
 	}
 
 	public HttpResponse handle(HttpRequest request) throws IOException {
-		DecodeResult d = TypeLengthValueUtils.decode(request.getBody());
+		Tlv8Reader d = Tlv8Reader.of(request.getBody());
 		
 		int method = d.getByte(MessageType.METHOD);
 		if (method == 3) { //Add pairing
@@ -0,0 +1,91 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared secrets of recently verified sessions, keyed by the 8 byte session ID that both sides derive from them, so a
+ * reconnecting controller can use Pair Resume instead of a full pair-verify. Entries expire after a fixed time, the
+ * least recently used entry is evicted when the cache is full, and every entry can be resumed only once.
+ */
+class ResumeSessionCache {
+
+	static final int SESSION_ID_LENGTH = 8;
+
+	private final int maxSessions;
+	private final long ttlNanos;
+	private final Map<ByteBuffer, Session> sessions;
+
+	ResumeSessionCache(int maxSessions, long ttl, TimeUnit unit) {
+		this.maxSessions = maxSessions;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.sessions = new LinkedHashMap<ByteBuffer, Session>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Session> eldest) {
+				return size() > ResumeSessionCache.this.maxSessions;
+			}
+		};
+	}
+
+	/**
+	 * @param sessionId the session ID derived from the shared secret.
+	 * @param sharedSecret the secret new session keys will be derived from on resume.
+	 * @param username the pairing username of the controller, checked again before the session is resumed.
+	 */
+	synchronized void put(byte[] sessionId, byte[] sharedSecret, String username) {
+		sessions.put(ByteBuffer.wrap(sessionId.clone()),
+				new Session(sharedSecret.clone(), username, System.nanoTime() + ttlNanos));
+	}
+
+	/**
+	 * Returns the session with the given ID without using it up, so that a request carrying a known ID but failing
+	 * authentication cannot evict it. Call {@link #remove(byte[], Session)} once the request has been verified.
+	 *
+	 * @return the session, or null if it is unknown or has expired.
+	 */
+	synchronized Session get(byte[] sessionId) {
+		ByteBuffer key = ByteBuffer.wrap(sessionId);
+		Session session = sessions.get(key);
+		if (session != null && System.nanoTime() - session.expires > 0) {
+			sessions.remove(key);
+			return null;
+		}
+		return session;
+	}
+
+	/**
+	 * Uses up a session returned by {@link #get(byte[])}.
+	 *
+	 * @return false if the session has been used or evicted meanwhile, and must not be resumed.
+	 */
+	synchronized boolean remove(byte[] sessionId, Session session) {
+		return sessions.remove(ByteBuffer.wrap(sessionId), session);
+	}
+
+	synchronized int size() {
+		return sessions.size();
+	}
+
+	static class Session {
+
+		private final byte[] sharedSecret;
+		private final String username;
+		private final long expires;
+
+		Session(byte[] sharedSecret, String username, long expires) {
+			this.sharedSecret = sharedSecret;
+			this.username = username;
+			this.expires = expires;
+		}
+
+		byte[] getSharedSecret() {
+			return sharedSecret;
+		}
+
+		String getUsername() {
+			return username;
+		}
+	}
+}
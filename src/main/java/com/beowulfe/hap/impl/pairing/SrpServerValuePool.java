@@ -0,0 +1,64 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import com.beowulfe.hap.impl.crypto.PrecomputedPool;
+
+/**
+ * Server private values 'b' for pair-setup, each with 'g^b mod N' computed ahead of use. The public value
+ * B = k*v + g^b mod N only needs the verifier for its cheap term, so the 3072 bit exponentiation that dominates
+ * M1-M2 happens off the connection thread. The exponentiation itself uses a {@link FixedBaseModPow} table for g and N
+ * shared by every pool in the JVM.
+ */
+class SrpServerValuePool extends PrecomputedPool<SrpServerValuePool.ServerValue> {
+
+	private static final SecureRandom secureRandom = new SecureRandom();
+
+	/**
+	 * @param size number of values to keep ready. Zero disables the pool, so every value is generated on demand.
+	 */
+	SrpServerValuePool(int size) {
+		super(size);
+	}
+
+	@Override
+	protected ServerValue generate() {
+		BigInteger b = HomekitSRP6Routines.generatePrivateValue(SrpHandler.N_3072, secureRandom);
+		return new ServerValue(b, Generator.POWERS.pow(b));
+	}
+
+	/**
+	 * Comb table for g and N, built on first use.
+	 */
+	private static class Generator {
+
+		static final FixedBaseModPow POWERS = new FixedBaseModPow(SrpHandler.G, SrpHandler.N_3072,
+				SrpHandler.N_3072.bitLength());
+	}
+
+	static class ServerValue {
+
+		private final BigInteger privateValue;
+		private final BigInteger publicBase;
+
+		ServerValue(BigInteger privateValue, BigInteger publicBase) {
+			this.privateValue = privateValue;
+			this.publicBase = publicBase;
+		}
+
+		/**
+		 * @return the server private value 'b'.
+		 */
+		BigInteger getPrivateValue() {
+			return privateValue;
+		}
+
+		/**
+		 * @return 'g^b mod N'.
+		 */
+		BigInteger getPublicBase() {
+			return publicBase;
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a TLV8 message. The message is indexed once, recording where the first fragment of each value
+ * starts and its total length, in a single array. A value longer than 255 bytes arrives as consecutive fragments of
+ * the same type, and is joined when it is read.
+ *
+ * Values are copied out rather than returned as views, as their consumers, BigInteger and the crypto APIs, take
+ * arrays.
+ */
+final class Tlv8Reader {
+
+	private static final int MAX_FRAGMENT = 255;
+	private static final int HEADER = 2;
+
+	private final byte[] message;
+	/**
+	 * The offset of the first fragment of each value followed by the length of the value.
+	 */
+	private int[] index = new int[16];
+	private int count = 0;
+
+	static Tlv8Reader of(byte[] message) throws IOException {
+		return new Tlv8Reader(message);
+	}
+
+	/**
+	 * @param message the TLV8 items. It must not be modified while the reader is in use.
+	 * @throws IOException if the last item is truncated.
+	 */
+	private Tlv8Reader(byte[] message) throws IOException {
+		this.message = message;
+		int lastFragment = 0;
+		for (int position = 0; position < message.length; ) {
+			if (message.length - position < HEADER) {
+				throw new IOException("Truncated TLV8 item at "+position);
+			}
+			int type = message[position] & 0xff;
+			int length = message[position + 1] & 0xff;
+			if (message.length - position - HEADER < length) {
+				throw new IOException("TLV8 item of type "+type+" at "+position+" exceeds the message");
+			}
+			if (count > 0 && type(count - 1) == type && lastFragment == MAX_FRAGMENT) {
+				index[2 * count - 1] += length;
+			} else {
+				add(position, length);
+			}
+			lastFragment = length;
+			position += HEADER + length;
+		}
+	}
+
+	boolean has(MessageType type) {
+		return find(type) >= 0;
+	}
+
+	/**
+	 * @return the length of the value, or -1 if there is no item of the type.
+	 */
+	int getLength(MessageType type) {
+		int item = find(type);
+		return item < 0 ? -1 : index[2 * item + 1];
+	}
+
+	/**
+	 * @return the value of a single byte item, or -1 if there is no item of the type or it is not one byte long.
+	 */
+	int getByte(MessageType type) {
+		int item = find(type);
+		return item < 0 || index[2 * item + 1] != 1 ? -1 : message[index[2 * item] + HEADER] & 0xff;
+	}
+
+	/**
+	 * @return a copy of the value, or null if there is no item of the type.
+	 */
+	byte[] getBytes(MessageType type) {
+		int length = getLength(type);
+		if (length < 0) {
+			return null;
+		}
+		byte[] value = new byte[length];
+		getBytes(type, 0, value, 0, length);
+		return value;
+	}
+
+	/**
+	 * Copies part of a value, across its fragments, straight into dst.
+	 *
+	 * @throws IndexOutOfBoundsException if there is no item of the type or it is too short.
+	 */
+	void getBytes(MessageType type, int valueOffset, byte[] dst, int dstOffset, int length) {
+		int item = find(type);
+		if (item < 0 || valueOffset < 0 || length < 0 || valueOffset + length > index[2 * item + 1]) {
+			throw new IndexOutOfBoundsException("No "+length+" bytes at "+valueOffset+" of "+type);
+		}
+		int position = index[2 * item];
+		while (length > 0) {
+			int fragment = message[position + 1] & 0xff;
+			if (valueOffset < fragment) {
+				int copied = Math.min(fragment - valueOffset, length);
+				System.arraycopy(message, position + HEADER + valueOffset, dst, dstOffset, copied);
+				dstOffset += copied;
+				length -= copied;
+				valueOffset = 0;
+			} else {
+				valueOffset -= fragment;
+			}
+			position += HEADER + fragment;
+		}
+	}
+
+	/**
+	 * @return the value as an unsigned big-endian integer, or null if there is no item of the type.
+	 */
+	BigInteger getBigInt(MessageType type) {
+		byte[] value = getBytes(type);
+		return value == null ? null : new BigInteger(1, value);
+	}
+
+	private int type(int item) {
+		return message[index[2 * item]] & 0xff;
+	}
+
+	private int find(MessageType type) {
+		for (int i = 0; i < count; i++) {
+			if (type(i) == type.getKey()) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void add(int offset, int length) {
+		if (2 * count == index.length) {
+			index = Arrays.copyOf(index, index.length * 2);
+		}
+		index[2 * count] = offset;
+		index[2 * count + 1] = length;
+		count++;
+	}
+}
@@ -0,0 +1,83 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+
+/**
+ * Writes a TLV8 message into an array allocated up front, sized by summing {@link #length(int)} over the items.
+ * Values longer than 255 bytes are split into fragments as they are copied in.
+ */
+final class Tlv8Writer {
+
+	private static final int MAX_FRAGMENT = 255;
+	private static final int HEADER = 2;
+
+	private final byte[] message;
+	private int position = 0;
+
+	/**
+	 * @param length exact length of the message.
+	 */
+	Tlv8Writer(int length) {
+		message = new byte[length];
+	}
+
+	/**
+	 * @return the number of bytes an item with a value of valueLength bytes takes in the message.
+	 */
+	static int length(int valueLength) {
+		return valueLength + HEADER * Math.max(1, (valueLength + MAX_FRAGMENT - 1) / MAX_FRAGMENT);
+	}
+
+	/**
+	 * @return the number of bytes an item with the value takes in the message.
+	 */
+	static int length(BigInteger value) {
+		return length(magnitudeLength(value));
+	}
+
+	void add(MessageType type, int value) {
+		message[position++] = (byte) type.getKey();
+		message[position++] = 1;
+		message[position++] = (byte) value;
+	}
+
+	void add(MessageType type, byte[] value) {
+		add(type, value, 0, value.length);
+	}
+
+	void add(MessageType type, byte[] value, int offset, int length) {
+		do {
+			int fragment = Math.min(length, MAX_FRAGMENT);
+			message[position++] = (byte) type.getKey();
+			message[position++] = (byte) fragment;
+			System.arraycopy(value, offset, message, position, fragment);
+			position += fragment;
+			offset += fragment;
+			length -= fragment;
+		} while (length > 0);
+	}
+
+	/**
+	 * Adds the value as an unsigned big-endian integer.
+	 */
+	void add(MessageType type, BigInteger value) {
+		byte[] bytes = value.toByteArray();
+		int length = magnitudeLength(value);
+		add(type, bytes, bytes.length - length, length);
+	}
+
+	/**
+	 * @return the message.
+	 * @throws IllegalStateException if fewer bytes were written than the message was sized for.
+	 */
+	byte[] toByteArray() {
+		if (position != message.length) {
+			throw new IllegalStateException("TLV8 message sized for "+message.length+" bytes, but "+position+" written");
+		}
+		return message;
+	}
+
+	private static int magnitudeLength(BigInteger value) {
+		return Math.max(1, (value.bitLength() + 7) / 8);
+	}
+}
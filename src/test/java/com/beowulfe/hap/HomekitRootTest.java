@@ -4,13 +4,17 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.util.List;
+import java.util.Map;
 import java8.util.concurrent.CompletableFuture;
 
 import org.junit.*;
+import org.mockito.ArgumentCaptor;
 
 import com.beowulfe.hap.impl.HomekitWebHandler;
 import com.beowulfe.hap.impl.http.HomekitClientConnectionFactory;
 import com.beowulfe.hap.impl.HomekitAdvertiser;
+import com.beowulfe.hap.impl.MemoryConfigurationStore;
 
 public class HomekitRootTest {
 	
@@ -61,20 +65,33 @@ public class HomekitRootTest {
 	}
 
 	@Test
-	public void testAddAccessoryResetsWeb() {
+	public void testAddAccessoryKeepsConnections() {
 		root.start();
-		verify(webHandler, never()).resetConnections();
 		root.addAccessory(accessory);
-		verify(webHandler).resetConnections();
+		verify(webHandler, never()).resetConnections();
+		Assert.assertSame(accessory, root.getRegistry().getAccessory(2));
 	}
 	
 	@Test
-	public void testRemoveAccessoryResetsWeb() {
+	public void testRemoveAccessoryKeepsConnections() throws Exception {
 		root.addAccessory(accessory);
 		root.start();
-		verify(webHandler, never()).resetConnections();
 		root.removeAccessory(accessory);
-		verify(webHandler).resetConnections();
+		verify(webHandler, never()).resetConnections();
+		Assert.assertNull(root.getRegistry().getAccessory(2));
+		Assert.assertEquals("2", advertisedConfigurationIndex());
+	}
+	
+	@Test
+	public void testAddAccessoryKeepsOtherAccessoriesServices() throws Exception {
+		HomekitAccessory other = mock(HomekitAccessory.class);
+		when(other.getId()).thenReturn(3);
+		root.addAccessory(accessory);
+		root.start();
+		List<Service> services = root.getRegistry().getServices(2);
+		root.addAccessory(other);
+		Assert.assertSame(services, root.getRegistry().getServices(2));
+		Assert.assertFalse(root.getRegistry().getServices(3).isEmpty());
 	}
 
 	@Test(expected=IndexOutOfBoundsException.class)
@@ -82,4 +99,40 @@ public class HomekitRootTest {
 		when(accessory.getId()).thenReturn(1);
 		root.addAccessory(accessory);
 	}
+
+	@Test
+	public void testConfigurationIndexAdvancesWhenAccessoriesChange() throws Exception {
+		root.start();
+		Assert.assertEquals("1", advertisedConfigurationIndex());
+		root.addAccessory(accessory);
+		Assert.assertEquals("2", advertisedConfigurationIndex());
+	}
+
+	@Test
+	public void testConfigurationIndexIsKeptAcrossRestarts() throws Exception {
+		HomekitConfigurationStore store = new MemoryConfigurationStore();
+		root.setConfigurationIndex(5);
+		root.setConfigurationStore(store);
+		root.addAccessory(accessory);
+		root.start();
+		Assert.assertEquals(5, store.getConfigurationIndex());
+
+		HomekitRoot restarted = new HomekitRoot(LABEL, webHandler, authInfo, mdnsRegistry);
+		restarted.setConfigurationStore(store);
+		restarted.addAccessory(accessory);
+		restarted.start();
+		Assert.assertEquals(5, store.getConfigurationIndex());
+
+		HomekitRoot changed = new HomekitRoot(LABEL, webHandler, authInfo, mdnsRegistry);
+		changed.setConfigurationStore(store);
+		changed.start();
+		Assert.assertEquals(6, store.getConfigurationIndex());
+	}
+
+	@SuppressWarnings("unchecked")
+	private String advertisedConfigurationIndex() throws Exception {
+		ArgumentCaptor<Map<String, String>> properties = ArgumentCaptor.forClass((Class<Map<String, String>>) (Class<?>) Map.class);
+		verify(mdnsRegistry, atLeastOnce()).registerService(any(), eq(LABEL), eq(PORT), properties.capture());
+		return properties.getValue().get("c#");
+	}
 }
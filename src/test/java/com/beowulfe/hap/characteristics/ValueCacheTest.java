@@ -0,0 +1,76 @@
+package com.beowulfe.hap.characteristics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java8.util.concurrent.CompletableFuture;
+
+import org.junit.*;
+
+public class ValueCacheTest {
+
+	private final AtomicInteger reads = new AtomicInteger();
+	private CompletableFuture<Integer> pending;
+
+	private CompletableFuture<Integer> read() {
+		reads.incrementAndGet();
+		pending = new CompletableFuture<>();
+		return pending;
+	}
+
+	@Test
+	public void testConcurrentReadsShareOneRead() {
+		ValueCache<Integer> cache = new ValueCache<>(0, 0);
+		CompletableFuture<Integer> first = cache.get(this::read);
+		CompletableFuture<Integer> second = cache.get(this::read);
+		Assert.assertEquals(1, reads.get());
+		pending.complete(7);
+		Assert.assertEquals(7, (int) first.join());
+		Assert.assertEquals(7, (int) second.join());
+		cache.get(this::read);
+		Assert.assertEquals("Without a time to live every read after completion is new", 2, reads.get());
+	}
+
+	@Test
+	public void testValueIsReusedUntilInvalidated() {
+		ValueCache<Integer> cache = new ValueCache<>(60000, 0);
+		cache.get(this::read);
+		pending.complete(7);
+		Assert.assertEquals(7, (int) cache.get(this::read).join());
+		Assert.assertEquals(1, reads.get());
+		cache.invalidate();
+		cache.get(this::read);
+		Assert.assertEquals(2, reads.get());
+	}
+
+	@Test
+	public void testStaleValueIsReturnedWhileRevalidating() {
+		ValueCache<Integer> cache = new ValueCache<>(0, 60000);
+		cache.get(this::read);
+		pending.complete(7);
+		CompletableFuture<Integer> stale = cache.get(this::read);
+		Assert.assertEquals(7, (int) stale.join());
+		Assert.assertEquals(2, reads.get());
+		pending.complete(8);
+		Assert.assertEquals(8, (int) cache.get(this::read).join());
+	}
+
+	@Test
+	public void testReadStartedBeforeInvalidationIsNotCached() {
+		ValueCache<Integer> cache = new ValueCache<>(60000, 0);
+		cache.get(this::read);
+		CompletableFuture<Integer> beforeChange = pending;
+		cache.invalidate();
+		beforeChange.complete(7);
+		cache.get(this::read);
+		Assert.assertEquals(2, reads.get());
+	}
+
+	@Test
+	public void testFailedReadIsNotCached() {
+		ValueCache<Integer> cache = new ValueCache<>(60000, 0);
+		CompletableFuture<Integer> failed = cache.get(this::read);
+		pending.completeExceptionally(new Exception("Unreachable"));
+		Assert.assertTrue(failed.isCompletedExceptionally());
+		cache.get(this::read);
+		Assert.assertEquals(2, reads.get());
+	}
+}
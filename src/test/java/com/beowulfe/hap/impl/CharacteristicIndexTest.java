@@ -0,0 +1,35 @@
+package com.beowulfe.hap.impl;
+
+import static org.mockito.Mockito.*;
+
+import org.junit.*;
+
+import com.beowulfe.hap.characteristics.Characteristic;
+
+public class CharacteristicIndexTest {
+
+	@Test
+	public void testFindsEveryCharacteristic() {
+		int size = 300;
+		int[] aids = new int[size];
+		int[] iids = new int[size];
+		Characteristic[] characteristics = new Characteristic[size];
+		for (int i = 0; i < size; i++) {
+			aids[i] = i / 30 + 1;
+			iids[i] = i % 30 + 2;
+			characteristics[i] = mock(Characteristic.class);
+		}
+		CharacteristicIndex index = new CharacteristicIndex(aids, iids, characteristics, size);
+		for (int i = 0; i < size; i++) {
+			Assert.assertSame(characteristics[i], index.get(aids[i], iids[i]));
+		}
+		Assert.assertNull(index.get(1, 1));
+		Assert.assertNull(index.get(2, 32));
+		Assert.assertNull(index.get(11, 2));
+	}
+
+	@Test
+	public void testEmptyIndex() {
+		Assert.assertNull(new CharacteristicIndex(new int[0], new int[0], new Characteristic[0], 0).get(1, 1));
+	}
+}
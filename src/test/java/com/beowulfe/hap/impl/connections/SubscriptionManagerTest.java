@@ -0,0 +1,185 @@
+package com.beowulfe.hap.impl.connections;
+
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java8.util.concurrent.CompletableFuture;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+
+import org.junit.*;
+import org.mockito.ArgumentCaptor;
+
+import com.beowulfe.hap.HomekitCharacteristicChangeCallback;
+import com.beowulfe.hap.accessories.ColorfulLightbulb;
+import com.beowulfe.hap.impl.characteristics.lightbulb.HueCharacteristic;
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+import com.beowulfe.hap.impl.http.HttpResponse;
+
+public class SubscriptionManagerTest {
+
+	private ScheduledExecutorService scheduler;
+	private HomekitClientConnection connection;
+	private HueCharacteristic first;
+	private HueCharacteristic second;
+
+	@Before
+	public void setup() {
+		scheduler = Executors.newSingleThreadScheduledExecutor();
+		connection = mock(HomekitClientConnection.class);
+		first = hue(10.0);
+		second = hue(20.0);
+	}
+
+	@After
+	public void teardown() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testChangesWithinWindowAreSentTogether() throws Exception {
+		SubscriptionManager subscriptions = new SubscriptionManager(50, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, first, connection);
+		subscriptions.addSubscription(3, 8, second, connection);
+		subscriptions.publish(2, 8, first);
+		subscriptions.publish(3, 8, second);
+		subscriptions.publish(2, 8, first);
+
+		ArgumentCaptor<HttpResponse> messages = ArgumentCaptor.forClass(HttpResponse.class);
+		verify(connection, timeout(2000).times(3)).outOfBand(messages.capture());
+		List<HttpResponse> sent = messages.getAllValues();
+		JsonArray characteristics = characteristics(sent.get(2));
+		Assert.assertEquals(2, characteristics.size());
+		Assert.assertEquals(2, characteristics.getJsonObject(0).getInt("aid"));
+		Assert.assertEquals(3, characteristics.getJsonObject(1).getInt("aid"));
+	}
+
+	@Test
+	public void testWithoutWindowEachChangeIsSent() throws Exception {
+		SubscriptionManager subscriptions = new SubscriptionManager(0, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, first, connection);
+		subscriptions.publish(2, 8, first);
+		subscriptions.publish(2, 8, first);
+		verify(connection, timeout(2000).times(3)).outOfBand(any(HttpResponse.class));
+	}
+
+	@Test
+	public void testReportedValueIsSentWithoutReadingBack() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		when(lightbulb.getHue()).thenReturn(CompletableFuture.completedFuture(10.0));
+		SubscriptionManager subscriptions = new SubscriptionManager(0, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, new HueCharacteristic(lightbulb), connection);
+		ArgumentCaptor<HomekitCharacteristicChangeCallback> callback =
+				ArgumentCaptor.forClass(HomekitCharacteristicChangeCallback.class);
+		verify(lightbulb).subscribeHue(callback.capture());
+
+		callback.getValue().changed(42.0);
+		ArgumentCaptor<HttpResponse> messages = ArgumentCaptor.forClass(HttpResponse.class);
+		verify(connection, timeout(2000).times(2)).outOfBand(messages.capture());
+		Assert.assertEquals(42, characteristics(messages.getAllValues().get(1)).getJsonObject(0).getInt("value"));
+		// Only the initial state sent on subscribing was read
+		verify(lightbulb, times(1)).getHue();
+	}
+
+	@Test
+	public void testChangesAreSentInOrderWhenReadsCompleteOutOfOrder() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		CompletableFuture<Double> slow = new CompletableFuture<>();
+		when(lightbulb.getHue()).thenReturn(CompletableFuture.completedFuture(5.0), slow,
+				CompletableFuture.completedFuture(20.0));
+		SubscriptionManager subscriptions = new SubscriptionManager(0, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, new HueCharacteristic(lightbulb), connection);
+		ArgumentCaptor<HomekitCharacteristicChangeCallback> callback =
+				ArgumentCaptor.forClass(HomekitCharacteristicChangeCallback.class);
+		verify(lightbulb).subscribeHue(callback.capture());
+
+		callback.getValue().changed();
+		callback.getValue().changed();
+		// The second change waits for the first to be sent rather than overtaking its slow read
+		verify(connection, after(200).times(1)).outOfBand(any(HttpResponse.class));
+		slow.complete(10.0);
+		ArgumentCaptor<HttpResponse> messages = ArgumentCaptor.forClass(HttpResponse.class);
+		verify(connection, timeout(2000).times(3)).outOfBand(messages.capture());
+		Assert.assertEquals(10, characteristics(messages.getAllValues().get(1)).getJsonObject(0).getInt("value"));
+		Assert.assertEquals(20, characteristics(messages.getAllValues().get(2)).getJsonObject(0).getInt("value"));
+	}
+
+	@Test
+	public void testFilterComparesWithInitialStateAndSendsLatestAfterInterval() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		when(lightbulb.getHue()).thenReturn(CompletableFuture.completedFuture(10.0));
+		HueCharacteristic characteristic = new HueCharacteristic(lightbulb);
+		characteristic.setEventFilter(1000, 5, 0);
+		SubscriptionManager subscriptions = new SubscriptionManager(0, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, characteristic, connection);
+		ArgumentCaptor<HomekitCharacteristicChangeCallback> callback =
+				ArgumentCaptor.forClass(HomekitCharacteristicChangeCallback.class);
+		verify(lightbulb).subscribeHue(callback.capture());
+
+		callback.getValue().changed(10.0);
+		callback.getValue().changed(12.0);
+		callback.getValue().changed(20.0);
+		callback.getValue().changed(30.0);
+		// 10 and 12 are within the deadband of the initial state, and 30 replaces 20 within the interval after it
+		ArgumentCaptor<HttpResponse> messages = ArgumentCaptor.forClass(HttpResponse.class);
+		verify(connection, timeout(3000).times(2)).outOfBand(messages.capture());
+		Assert.assertEquals(10, characteristics(messages.getAllValues().get(0)).getJsonObject(0).getInt("value"));
+		Assert.assertEquals(30, characteristics(messages.getAllValues().get(1)).getJsonObject(0).getInt("value"));
+		verify(connection, after(200).times(2)).outOfBand(any(HttpResponse.class));
+	}
+
+	@Test
+	public void testSubscriptionMovesToReplacingCharacteristic() throws Exception {
+		ColorfulLightbulb replaced = mock(ColorfulLightbulb.class);
+		when(replaced.getHue()).thenReturn(CompletableFuture.completedFuture(10.0));
+		ColorfulLightbulb replacing = mock(ColorfulLightbulb.class);
+		when(replacing.getHue()).thenReturn(CompletableFuture.completedFuture(30.0));
+		HueCharacteristic replacement = new HueCharacteristic(replacing);
+		SubscriptionManager subscriptions = new SubscriptionManager(0, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, new HueCharacteristic(replaced), connection);
+
+		subscriptions.replaceCharacteristic(2, 8, replacement);
+		verify(replaced).unsubscribeHue();
+		verify(replacing).subscribeHue(any(HomekitCharacteristicChangeCallback.class));
+		subscriptions.publish(2, 8, replacement);
+		ArgumentCaptor<HttpResponse> messages = ArgumentCaptor.forClass(HttpResponse.class);
+		verify(connection, timeout(2000).times(2)).outOfBand(messages.capture());
+		Assert.assertEquals(30, characteristics(messages.getAllValues().get(1)).getJsonObject(0).getInt("value"));
+	}
+
+	@Test
+	public void testLastRemovalUnsubscribes() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		when(lightbulb.getHue()).thenReturn(CompletableFuture.completedFuture(10.0));
+		HueCharacteristic characteristic = new HueCharacteristic(lightbulb);
+		HomekitClientConnection other = mock(HomekitClientConnection.class);
+		SubscriptionManager subscriptions = new SubscriptionManager(0, scheduler, scheduler);
+		subscriptions.addSubscription(2, 8, characteristic, connection);
+		subscriptions.addSubscription(2, 8, characteristic, other);
+		subscriptions.removeSubscription(2, 8, connection);
+		verify(lightbulb, never()).unsubscribeHue();
+		subscriptions.removeConnection(other);
+		verify(lightbulb).unsubscribeHue();
+
+		subscriptions.addSubscription(2, 8, characteristic, connection);
+		verify(lightbulb, times(2)).subscribeHue(any(HomekitCharacteristicChangeCallback.class));
+	}
+
+	private static HueCharacteristic hue(double value) {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		when(lightbulb.getHue()).thenReturn(CompletableFuture.completedFuture(value));
+		return new HueCharacteristic(lightbulb);
+	}
+
+	private static JsonArray characteristics(HttpResponse response) {
+		ByteBuffer body = response.getBody();
+		byte[] bytes = new byte[body.remaining()];
+		body.get(bytes);
+		return Json.createReader(new ByteArrayInputStream(bytes)).readObject().getJsonArray("characteristics");
+	}
+}
@@ -0,0 +1,55 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.*;
+
+public class AeadBackendsTest {
+
+	private static final byte[] KEY = new byte[32];
+
+	@Test
+	public void testBouncyCastlePassesSelfTest() {
+		Assert.assertTrue(AeadBackends.selfTest(new BouncyCastleAeadBackend()));
+	}
+
+	@Test
+	public void testForcedBackendIsSelected() {
+		AeadBackend selected = AeadBackends.select(AeadBackends.candidates(), BouncyCastleAeadBackend.NAME);
+		Assert.assertEquals(BouncyCastleAeadBackend.NAME, selected.getName());
+	}
+
+	@Test
+	public void testFailingBackendIsSkipped() {
+		AeadBackend broken = new BouncyCastleAeadBackend() {
+			@Override
+			public AeadCipher newCipher(byte[] key) {
+				return super.newCipher(new byte[32]);
+			}
+		};
+		Assert.assertFalse(AeadBackends.selfTest(broken));
+		try {
+			AeadBackends.select(Collections.singletonList(broken), null);
+			Assert.fail("Selected a backend that failed its self-test");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testJcaInteroperatesWithBouncyCastle() throws Exception {
+		JcaAeadBackend jca = new JcaAeadBackend();
+		Assume.assumeTrue(jca.isAvailable());
+		Assert.assertTrue(AeadBackends.selfTest(jca));
+
+		byte[] plaintext = "EVENT/1.0 200 OK".getBytes(StandardCharsets.UTF_8);
+		byte[] aad = new byte[] { (byte) plaintext.length, 0 };
+		byte[] sealed = new byte[plaintext.length + AeadCipher.TAG_LENGTH];
+		jca.newCipher(KEY).seal(7, aad, 0, aad.length, plaintext, 0, plaintext.length, sealed, 0);
+		byte[] opened = new byte[plaintext.length];
+		new BouncyCastleAeadBackend().newCipher(KEY).open(7, aad, 0, aad.length, sealed, 0, sealed.length, opened, 0);
+		Assert.assertTrue(Arrays.equals(plaintext, opened));
+	}
+}
@@ -0,0 +1,79 @@
+package com.beowulfe.hap.impl.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.bouncycastle.util.Pack;
+import org.junit.*;
+
+public class SessionCipherTest {
+
+	private byte[] key;
+	private byte[] aad;
+
+	@Before
+	public void setup() {
+		Random random = new Random(42);
+		key = new byte[32];
+		random.nextBytes(key);
+		aad = new byte[] { 0x05, 0x00 };
+	}
+
+	@Test
+	public void testSealMatchesPerFrameEncoder() throws Exception {
+		SessionCipher cipher = new SessionCipher(key);
+		for (int frame=0; frame<3; frame++) {
+			byte[] plaintext = ("frame"+frame).getBytes(StandardCharsets.UTF_8);
+			byte[] expected = new ChachaEncoder(key, Pack.longToLittleEndian(frame)).encodeCiphertext(plaintext, aad);
+			byte[] actual = new byte[plaintext.length + SessionCipher.TAG_LENGTH];
+			int length = cipher.seal(aad, 0, aad.length, plaintext, 0, plaintext.length, actual, 0);
+			Assert.assertEquals(expected.length, length);
+			Assert.assertArrayEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void testOpenInPlace() throws Exception {
+		SessionCipher sealer = new SessionCipher(key);
+		SessionCipher opener = new SessionCipher(key);
+		for (int frame=0; frame<3; frame++) {
+			byte[] plaintext = ("frame"+frame).getBytes(StandardCharsets.UTF_8);
+			byte[] buffer = new byte[plaintext.length + SessionCipher.TAG_LENGTH];
+			sealer.seal(aad, 0, aad.length, plaintext, 0, plaintext.length, buffer, 0);
+			int length = opener.open(aad, 0, aad.length, buffer, 0, buffer.length, buffer, 0);
+			Assert.assertEquals(plaintext.length, length);
+			for (int i=0; i<length; i++) {
+				Assert.assertEquals(plaintext[i], buffer[i]);
+			}
+		}
+	}
+
+	@Test
+	public void testPrecomputedSealMatchesRegularSeal() throws Exception {
+		SessionCipher regular = new SessionCipher(new BouncyCastleAeadBackend(), key);
+		SessionCipher precomputed = new SessionCipher(new BouncyCastleAeadBackend(), key, 4);
+		Random random = new Random(3);
+		int[] lengths = { 0, 150, KeystreamWindow.PRECOMPUTED_LENGTH, 1024, 1, 200, 200, 200, 200, 200, 90 };
+		for (int frame=0; frame<lengths.length; frame++) {
+			if (frame % 3 == 0) {
+				precomputed.precompute();
+			}
+			byte[] plaintext = new byte[lengths[frame]];
+			random.nextBytes(plaintext);
+			byte[] expected = new byte[plaintext.length + SessionCipher.TAG_LENGTH];
+			byte[] actual = new byte[expected.length];
+			regular.seal(aad, 0, aad.length, plaintext, 0, plaintext.length, expected, 0);
+			Assert.assertEquals(expected.length, precomputed.seal(aad, 0, aad.length, plaintext, 0, plaintext.length, actual, 0));
+			Assert.assertArrayEquals("Frame "+frame, expected, actual);
+		}
+	}
+
+	@Test(expected=java.io.IOException.class)
+	public void testOpenRejectsTamperedFrame() throws Exception {
+		byte[] plaintext = "frame".getBytes(StandardCharsets.UTF_8);
+		byte[] buffer = new byte[plaintext.length + SessionCipher.TAG_LENGTH];
+		new SessionCipher(key).seal(aad, 0, aad.length, plaintext, 0, plaintext.length, buffer, 0);
+		buffer[0] ^= 1;
+		new SessionCipher(key).open(aad, 0, aad.length, buffer, 0, buffer.length, buffer, 0);
+	}
+}
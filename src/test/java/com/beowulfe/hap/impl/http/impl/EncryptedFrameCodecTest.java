@@ -0,0 +1,147 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.*;
+
+import com.beowulfe.hap.impl.crypto.SessionCipher;
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+import com.beowulfe.hap.impl.http.HttpRequest;
+import com.beowulfe.hap.impl.http.HttpResponse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+
+public class EncryptedFrameCodecTest {
+
+	private byte[] plaintext;
+	private EmbeddedChannel encoder;
+	private EmbeddedChannel decoder;
+
+	@Before
+	public void setup() {
+		plaintext = new byte[2500];
+		new Random(7).nextBytes(plaintext);
+		byte[] key = new byte[32];
+		new Random(8).nextBytes(key);
+		encoder = new EmbeddedChannel(new EncryptedFrameEncoder(new LoopbackConnection(key)));
+		decoder = new EmbeddedChannel(new EncryptedFrameDecoder(new LoopbackConnection(key)));
+	}
+
+	@Test
+	public void testEncodeSplitsIntoFrames() {
+		ByteBuf encrypted = encrypt();
+		Assert.assertEquals(plaintext.length + 3 * HomekitClientConnection.FRAME_OVERHEAD, encrypted.readableBytes());
+		Assert.assertEquals(HomekitClientConnection.MAX_FRAME_LENGTH, encrypted.getUnsignedByte(0) | encrypted.getUnsignedByte(1) << 8);
+		encrypted.release();
+	}
+
+	@Test
+	public void testDecodeWholeBuffer() {
+		decoder.writeInbound(encrypt());
+		assertDecrypted();
+	}
+
+	@Test
+	public void testDecodeSingleByteSegments() {
+		ByteBuf encrypted = encrypt();
+		while (encrypted.isReadable()) {
+			decoder.writeInbound(encrypted.readBytes(1));
+		}
+		encrypted.release();
+		assertDecrypted();
+	}
+
+	@Test
+	public void testDecodeDirectBufferAcrossReads() {
+		ByteBuf encrypted = encrypt();
+		while (encrypted.isReadable()) {
+			int length = Math.min(encrypted.readableBytes(), 700);
+			ByteBuf segment = Unpooled.directBuffer(length);
+			encrypted.readBytes(segment, length);
+			decoder.writeInbound(segment);
+		}
+		encrypted.release();
+		assertDecrypted();
+	}
+
+	@Test(expected=DecoderException.class)
+	public void testDecodeRejectsOversizeFrame() {
+		decoder.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x01, 0x04 }));
+	}
+
+	@Test(expected=DecoderException.class)
+	public void testDecodeRejectsOversizeFrameWithSplitPrefix() {
+		decoder.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x01 }));
+		decoder.writeInbound(Unpooled.wrappedBuffer(new byte[] { 0x04 }));
+	}
+
+	private ByteBuf encrypt() {
+		encoder.writeOutbound(Unpooled.wrappedBuffer(plaintext));
+		return (ByteBuf) encoder.readOutbound();
+	}
+
+	private void assertDecrypted() {
+		byte[] decrypted = new byte[plaintext.length];
+		int pos = 0;
+		ByteBuf buf;
+		while ((buf = (ByteBuf) decoder.readInbound()) != null) {
+			Assert.assertTrue("Empty buffer passed downstream", buf.isReadable());
+			int length = buf.readableBytes();
+			buf.readBytes(decrypted, pos, length);
+			pos += length;
+			buf.release();
+		}
+		Assert.assertEquals(plaintext.length, pos);
+		Assert.assertArrayEquals(plaintext, decrypted);
+	}
+
+	private static class LoopbackConnection implements HomekitClientConnection {
+
+		private final SessionCipher readCipher;
+		private final SessionCipher writeCipher;
+
+		LoopbackConnection(byte[] key) {
+			readCipher = new SessionCipher(key);
+			writeCipher = new SessionCipher(key);
+		}
+
+		@Override
+		public int decryptFrame(byte[] frame, int offset, int length, byte[] out, int outOffset) throws IOException {
+			return readCipher.open(frame, offset, 2, frame, offset + 2, length - 2, out, outOffset);
+		}
+
+		@Override
+		public int encryptFrame(byte[] plaintext, int offset, int length, byte[] out, int outOffset) throws IOException {
+			out[outOffset] = (byte) length;
+			out[outOffset + 1] = (byte) (length >>> 8);
+			return 2 + writeCipher.seal(out, outOffset, 2, plaintext, offset, length, out, outOffset + 2);
+		}
+
+		@Override
+		public void precomputeOutbound() {
+			writeCipher.precompute();
+		}
+
+		@Override
+		public boolean isPrecomputingOutbound() {
+			return writeCipher.isPrecomputing();
+		}
+
+		@Override
+		public HttpResponse handleRequest(HttpRequest request) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public void outOfBand(HttpResponse message) {
+		}
+	}
+}
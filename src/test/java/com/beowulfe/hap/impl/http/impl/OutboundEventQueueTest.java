@@ -0,0 +1,68 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.*;
+import org.mockito.ArgumentCaptor;
+
+import com.beowulfe.hap.impl.json.EventResponse;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.FullHttpResponse;
+
+public class OutboundEventQueueTest {
+
+	private Channel channel;
+	private OutboundEventStats stats;
+	private OutboundEventQueue queue;
+
+	@Before
+	public void setup() {
+		channel = mock(Channel.class);
+		when(channel.isActive()).thenReturn(true);
+		stats = new OutboundEventStats(2);
+		queue = new OutboundEventQueue(channel, stats);
+	}
+
+	@Test
+	public void testWritesStraightAwayWhileWritable() {
+		when(channel.isWritable()).thenReturn(true);
+		queue.offer(event(2, 8, 1));
+		queue.offer(event(2, 8, 2));
+		verify(channel, times(2)).writeAndFlush(any(FullHttpResponse.class));
+		Assert.assertEquals(0, stats.getQueuedCount());
+	}
+
+	@Test
+	public void testKeepsLatestValuesWhileNotWritable() {
+		when(channel.isWritable()).thenReturn(false);
+		queue.offer(event(2, 8, 1));
+		queue.offer(event(2, 8, 2));
+		queue.offer(event(3, 8, 3));
+		queue.offer(event(4, 8, 4));
+		verify(channel, never()).writeAndFlush(any());
+		Assert.assertEquals(2, queue.size());
+		Assert.assertEquals(4, stats.getQueuedCount());
+		Assert.assertEquals(1, stats.getConflatedCount());
+		Assert.assertEquals(1, stats.getDroppedCount());
+
+		when(channel.isWritable()).thenReturn(true);
+		queue.drain();
+		ArgumentCaptor<FullHttpResponse> written = ArgumentCaptor.forClass(FullHttpResponse.class);
+		verify(channel).writeAndFlush(written.capture());
+		String body = written.getValue().content().toString(StandardCharsets.UTF_8);
+		Assert.assertEquals("{\"characteristics\":[{\"aid\":3,\"iid\":8,\"value\":3},{\"aid\":4,\"iid\":8,\"value\":4}]}", body);
+		Assert.assertEquals(0, queue.size());
+	}
+
+	private static EventResponse event(int aid, int iid, int value) {
+		JsonObject characteristic = Json.createObjectBuilder().add("aid", aid).add("iid", iid).add("value", value).build();
+		return new EventResponse(Arrays.asList(characteristic));
+	}
+}
@@ -0,0 +1,75 @@
+package com.beowulfe.hap.impl.http.impl;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.*;
+
+public class PairingExecutorTest {
+
+	private PairingExecutor executor;
+
+	@Before
+	public void setup() {
+		executor = new PairingExecutor(1, 1);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdown();
+	}
+
+	@Test
+	public void testRejectsWhenQueueIsFull() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(2);
+		executor.execute(() -> {
+			started.countDown();
+			await(release);
+			done.countDown();
+		});
+		Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+		executor.execute(done::countDown);
+		Assert.assertEquals(1, executor.getQueueDepth());
+		try {
+			executor.execute(done::countDown);
+			Assert.fail("Expected the request to be rejected");
+		} catch (RejectedExecutionException e) {
+			Assert.assertEquals(1, executor.getRejectedCount());
+		}
+		release.countDown();
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		Assert.assertTrue(awaitCompleted(2));
+		Assert.assertEquals(2, executor.getCompletedCount());
+		Assert.assertTrue(executor.getMaxWaitMillis() > 0);
+	}
+
+	@Test
+	public void testHandlesOnlyPairingRequests() {
+		Assert.assertTrue(executor.handles("/pair-setup"));
+		Assert.assertTrue(executor.handles("/pair-verify"));
+		Assert.assertFalse(executor.handles("/pairings"));
+		Assert.assertFalse(executor.handles("/accessories"));
+	}
+
+	private boolean awaitCompleted(long count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (executor.getCompletedCount() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				return false;
+			}
+			Thread.sleep(10);
+		}
+		return true;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
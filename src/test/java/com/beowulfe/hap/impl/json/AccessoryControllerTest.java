@@ -0,0 +1,115 @@
+package com.beowulfe.hap.impl.json;
+
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java8.util.concurrent.CompletableFuture;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+
+import org.junit.*;
+
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.Service;
+import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.impl.HomekitRegistry;
+import com.beowulfe.hap.impl.http.StreamingResponse;
+
+public class AccessoryControllerTest {
+
+	private HomekitRegistry registry;
+	private CompletableFuture<JsonObject> slowValue;
+
+	@Before
+	public void setup() {
+		registry = new HomekitRegistry("Test");
+		slowValue = new CompletableFuture<>();
+		registry.add(accessory(1, slowValue));
+		registry.add(accessory(2, CompletableFuture.completedFuture(Json.createObjectBuilder().add("iid", 7).build())));
+		registry.reset();
+	}
+
+	@Test
+	public void testAccessoriesAreWrittenInOrderAsTheirValuesArrive() throws Exception {
+		RecordingStream out = new RecordingStream();
+		CompletableFuture<Void> written = ((StreamingResponse) new AccessoryController(registry).listing()).writeBody(out);
+		Assert.assertTrue("Nothing may follow an accessory still being read", out.flushes.isEmpty());
+
+		slowValue.complete(Json.createObjectBuilder().add("iid", 7).build());
+		written.join();
+		Assert.assertTrue(out.closed);
+		Assert.assertEquals("One flush per accessory", 2, out.flushes.size());
+
+		JsonArray accessories = Json.createReader(new ByteArrayInputStream(out.toByteArray()))
+				.readObject().getJsonArray("accessories");
+		Assert.assertEquals(1, accessories.getJsonObject(0).getInt("aid"));
+		Assert.assertEquals(2, accessories.getJsonObject(1).getInt("aid"));
+		JsonArray services = accessories.getJsonObject(0).getJsonArray("services");
+		Assert.assertEquals(2, services.size());
+		Assert.assertEquals(1, services.getJsonObject(0).getInt("iid"));
+		int informationCharacteristics = services.getJsonObject(0).getJsonArray("characteristics").size();
+		Assert.assertEquals(informationCharacteristics + 2, services.getJsonObject(1).getInt("iid"));
+		Assert.assertEquals("lightbulb", services.getJsonObject(1).getString("type"));
+		Assert.assertEquals(1, services.getJsonObject(1).getJsonArray("characteristics").size());
+	}
+
+	@Test
+	public void testOnlyPublishedServicesAreListed() throws Exception {
+		registry.add(accessory(3, CompletableFuture.completedFuture(Json.createObjectBuilder().add("iid", 7).build())));
+		Service service = registry.getServices(2).get(1);
+		List<Characteristic> characteristics = Arrays.asList(service.getCharacteristics().get(0),
+				mock(Characteristic.class));
+		when(service.getCharacteristics()).thenReturn(characteristics);
+
+		RecordingStream out = new RecordingStream();
+		CompletableFuture<Void> written = ((StreamingResponse) new AccessoryController(registry).listing()).writeBody(out);
+		slowValue.complete(Json.createObjectBuilder().add("iid", 7).build());
+		written.join();
+		JsonArray accessories = Json.createReader(new ByteArrayInputStream(out.toByteArray()))
+				.readObject().getJsonArray("accessories");
+		Assert.assertEquals("Accessories added since the last update are not listed", 2, accessories.size());
+		Assert.assertEquals(1, accessories.getJsonObject(1).getJsonArray("services").getJsonObject(1)
+				.getJsonArray("characteristics").size());
+	}
+
+	private static HomekitAccessory accessory(int aid, CompletableFuture<JsonObject> value) {
+		Characteristic characteristic = mock(Characteristic.class);
+		when(characteristic.toJson(anyInt())).thenReturn(value);
+		Service service = mock(Service.class);
+		when(service.getType()).thenReturn("lightbulb");
+		when(service.getCharacteristics()).thenReturn(Collections.singletonList(characteristic));
+		HomekitAccessory accessory = mock(HomekitAccessory.class);
+		when(accessory.getId()).thenReturn(aid);
+		when(accessory.getLabel()).thenReturn("Accessory "+aid);
+		when(accessory.getManufacturer()).thenReturn("Manufacturer");
+		when(accessory.getModel()).thenReturn("Model");
+		when(accessory.getSerialNumber()).thenReturn("Serial");
+		when(accessory.getServices()).thenReturn(Arrays.asList(service));
+		return accessory;
+	}
+
+	private static class RecordingStream extends ByteArrayOutputStream {
+
+		private final List<Integer> flushes = new ArrayList<>();
+		private boolean closed = false;
+
+		@Override
+		public void flush() {
+			if (size() > 0 && (flushes.isEmpty() || flushes.get(flushes.size() - 1) < size())) {
+				flushes.add(size());
+			}
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
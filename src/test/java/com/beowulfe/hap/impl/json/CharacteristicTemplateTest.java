@@ -0,0 +1,94 @@
+package com.beowulfe.hap.impl.json;
+
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java8.util.concurrent.CompletableFuture;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+import org.junit.*;
+
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.accessories.ColorfulLightbulb;
+import com.beowulfe.hap.characteristics.BaseCharacteristic;
+import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.characteristics.StaticStringCharacteristic;
+import com.beowulfe.hap.impl.characteristics.information.Identify;
+import com.beowulfe.hap.impl.characteristics.lightbulb.HueCharacteristic;
+
+public class CharacteristicTemplateTest {
+
+	@Test
+	public void testFloatMatchesToJson() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		when(lightbulb.getHue()).thenReturn(CompletableFuture.completedFuture(42.0));
+		assertMatchesToJson(new HueCharacteristic(lightbulb));
+	}
+
+	@Test
+	public void testEscapedStringMatchesToJson() throws Exception {
+		assertMatchesToJson(new StaticStringCharacteristic("00000020-0000-1000-8000-0026BB765291",
+				"The \"manufacturer\"", "Acme\\\n\u0001 \u00e9"));
+	}
+
+	@Test
+	public void testWriteOnlyHasNoValue() throws Exception {
+		JsonObject json = assertMatchesToJson(new Identify(mock(HomekitAccessory.class)));
+		Assert.assertFalse(json.containsKey("value"));
+	}
+
+	@Test
+	public void testFailedValueIsNull() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		CompletableFuture<Double> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new Exception("Unreachable"));
+		when(lightbulb.getHue()).thenReturn(failed);
+		Assert.assertTrue(assertMatchesToJson(new HueCharacteristic(lightbulb)).isNull("value"));
+	}
+
+	@Test
+	public void testAttributesFromMakeBuilderAreKept() throws Exception {
+		BaseCharacteristic<String> characteristic = new BaseCharacteristic<String>(
+				"00000023-0000-1000-8000-0026BB765291", "string", false, true, "Name") {
+			@Override
+			protected CompletableFuture<JsonObjectBuilder> makeBuilder(int instanceId) {
+				return super.makeBuilder(instanceId).thenApply(builder -> builder.add("maxLen", 64));
+			}
+
+			@Override
+			protected String convert(JsonValue jsonValue) {
+				return null;
+			}
+
+			@Override
+			protected void setValue(String value) {
+			}
+
+			@Override
+			protected CompletableFuture<String> getValue() {
+				return CompletableFuture.completedFuture("Lamp");
+			}
+
+			@Override
+			protected String getDefault() {
+				return "";
+			}
+		};
+		Assert.assertNull(characteristic.getMetadata());
+		Assert.assertEquals(64, assertMatchesToJson(characteristic).getInt("maxLen"));
+	}
+
+	private static JsonObject assertMatchesToJson(Characteristic characteristic) throws Exception {
+		CharacteristicTemplate template = CharacteristicTemplate.compile(characteristic, 9);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		template.write(out, template.read().join());
+		JsonObject json = Json.createReader(new ByteArrayInputStream(out.toByteArray())).readObject();
+		Assert.assertEquals(characteristic.toJson(9).join(), json);
+		return json;
+	}
+}
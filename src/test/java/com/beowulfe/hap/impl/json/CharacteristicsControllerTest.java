@@ -0,0 +1,196 @@
+package com.beowulfe.hap.impl.json;
+
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java8.util.concurrent.CompletableFuture;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonNumber;
+
+import org.junit.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.MockSettings;
+import org.mockito.MockitoAnnotations;
+
+import com.beowulfe.hap.HomekitAccessory;
+import com.beowulfe.hap.HomekitValueCachePolicy;
+import com.beowulfe.hap.Service;
+import com.beowulfe.hap.accessories.BatchWritable;
+import com.beowulfe.hap.accessories.ColorfulLightbulb;
+import com.beowulfe.hap.characteristics.Characteristic;
+import com.beowulfe.hap.characteristics.CharacteristicWrite;
+import com.beowulfe.hap.impl.HomekitRegistry;
+import com.beowulfe.hap.impl.characteristics.lightbulb.HueCharacteristic;
+import com.beowulfe.hap.impl.connections.SubscriptionManager;
+import com.beowulfe.hap.impl.http.HomekitClientConnection;
+import com.beowulfe.hap.impl.http.HttpRequest;
+import com.beowulfe.hap.impl.http.HttpResponse;
+
+public class CharacteristicsControllerTest {
+
+	private HomekitRegistry registry;
+	private ColorfulLightbulb fast;
+	private ColorfulLightbulb hung;
+	@Captor
+	private ArgumentCaptor<List<CharacteristicWrite>> writes;
+
+	@Before
+	public void setup() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		fast = mock(ColorfulLightbulb.class);
+		when(fast.getHue()).thenReturn(CompletableFuture.completedFuture(120.0));
+		hung = mock(ColorfulLightbulb.class);
+		when(hung.getHue()).thenReturn(new CompletableFuture<>());
+		registry = new HomekitRegistry("Test");
+		registry.add(accessory(2, fast));
+		registry.add(accessory(3, hung));
+		registry.reset();
+	}
+
+	@Test
+	public void testReadsAllValues() throws Exception {
+		HttpResponse response = get("/characteristics?id=2.8,2.2");
+		Assert.assertEquals(200, response.getStatusCode());
+		JsonArray characteristics = characteristics(response);
+		Assert.assertEquals(120, characteristics.getJsonObject(0).getInt("value"));
+		Assert.assertEquals(2, characteristics.getJsonObject(1).getInt("iid"));
+		Assert.assertFalse(characteristics.getJsonObject(0).containsKey("status"));
+	}
+
+	@Test
+	public void testFailedReadIsReported() throws Exception {
+		ColorfulLightbulb failing = mock(ColorfulLightbulb.class);
+		CompletableFuture<Double> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new Exception("Unreachable"));
+		when(failing.getHue()).thenReturn(failed);
+		registry.add(accessory(4, failing));
+		registry.reset();
+
+		HttpResponse response = get("/characteristics?id=4.8,2.8");
+		Assert.assertEquals(207, response.getStatusCode());
+		JsonArray characteristics = characteristics(response);
+		Assert.assertEquals(HapStatus.COMMUNICATION_FAILURE, characteristics.getJsonObject(0).getInt("status"));
+		Assert.assertFalse(characteristics.getJsonObject(0).containsKey("value"));
+		Assert.assertEquals(HapStatus.SUCCESS, characteristics.getJsonObject(1).getInt("status"));
+	}
+
+	@Test
+	public void testHungReadTimesOutWithoutHoldingUpOthers() throws Exception {
+		long start = System.currentTimeMillis();
+		HttpResponse response = get("/characteristics?id=3.8,2.8");
+		Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+		Assert.assertEquals(207, response.getStatusCode());
+		JsonArray characteristics = characteristics(response);
+		Assert.assertEquals(HapStatus.OPERATION_TIMED_OUT, characteristics.getJsonObject(0).getInt("status"));
+		Assert.assertFalse(characteristics.getJsonObject(0).containsKey("value"));
+		Assert.assertEquals(HapStatus.SUCCESS, characteristics.getJsonObject(1).getInt("status"));
+		Assert.assertEquals(120, characteristics.getJsonObject(1).getInt("value"));
+	}
+
+	@Test
+	public void testFailedWritesAreReportedPerItem() throws Exception {
+		HttpResponse response = put("{\"characteristics\":[{\"aid\":2,\"iid\":8,\"value\":90},"
+				+"{\"aid\":3,\"iid\":8,\"value\":\"red\"},{\"aid\":9,\"iid\":8,\"value\":90}]}");
+		Assert.assertEquals(207, response.getStatusCode());
+		JsonArray characteristics = characteristics(response);
+		Assert.assertEquals(HapStatus.SUCCESS, characteristics.getJsonObject(0).getInt("status"));
+		Assert.assertEquals(HapStatus.INVALID_VALUE, characteristics.getJsonObject(1).getInt("status"));
+		Assert.assertEquals(HapStatus.RESOURCE_DOES_NOT_EXIST, characteristics.getJsonObject(2).getInt("status"));
+		verify(fast).setHue(90.0);
+	}
+
+	@Test
+	public void testReadAfterWriteIsNotServedFromCache() throws Exception {
+		when(fast.getHue()).thenReturn(CompletableFuture.completedFuture(120.0),
+				CompletableFuture.completedFuture(90.0));
+		HomekitValueCachePolicy policy = mock(HomekitValueCachePolicy.class);
+		when(policy.getTimeToLive(any(HomekitAccessory.class), any(Characteristic.class))).thenReturn(60000L);
+		registry.setValueCachePolicy(policy);
+		registry.reset();
+
+		Assert.assertEquals(120, characteristics(get("/characteristics?id=2.8")).getJsonObject(0).getInt("value"));
+		Assert.assertEquals(204, put("{\"characteristics\":[{\"aid\":2,\"iid\":8,\"value\":90}]}").getStatusCode());
+		Assert.assertEquals(90, characteristics(get("/characteristics?id=2.8")).getJsonObject(0).getInt("value"));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBatchWritableAccessoryReceivesAllItsWrites() throws Exception {
+		ColorfulLightbulb lightbulb = mock(ColorfulLightbulb.class);
+		HomekitAccessory accessory = accessory(4, lightbulb, withSettings().extraInterfaces(BatchWritable.class));
+		BatchWritable batchWritable = (BatchWritable) accessory;
+		when(batchWritable.writeBatch(any(List.class))).thenReturn(CompletableFuture.completedFuture(null));
+		registry.add(accessory);
+		registry.reset();
+
+		HttpResponse response = put("{\"characteristics\":[{\"aid\":4,\"iid\":8,\"value\":10},"
+				+"{\"aid\":2,\"iid\":8,\"value\":90},{\"aid\":4,\"iid\":8,\"value\":20}]}");
+		Assert.assertEquals(204, response.getStatusCode());
+		verify(batchWritable).writeBatch(writes.capture());
+		Assert.assertEquals(2, writes.getValue().size());
+		Assert.assertEquals(20, ((JsonNumber) writes.getValue().get(1).getValue()).intValue());
+		verify(lightbulb, never()).setHue(anyDouble());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testHungWriteTimesOut() throws Exception {
+		HomekitAccessory accessory = accessory(4, mock(ColorfulLightbulb.class),
+				withSettings().extraInterfaces(BatchWritable.class));
+		when(((BatchWritable) accessory).writeBatch(any(List.class))).thenReturn(new CompletableFuture<>());
+		registry.add(accessory);
+		registry.reset();
+
+		HttpResponse response = put("{\"characteristics\":[{\"aid\":4,\"iid\":8,\"value\":10},"
+				+"{\"aid\":2,\"iid\":8,\"value\":90}]}");
+		Assert.assertEquals(207, response.getStatusCode());
+		JsonArray characteristics = characteristics(response);
+		Assert.assertEquals(HapStatus.OPERATION_TIMED_OUT, characteristics.getJsonObject(0).getInt("status"));
+		Assert.assertEquals(HapStatus.SUCCESS, characteristics.getJsonObject(1).getInt("status"));
+	}
+
+	private HttpResponse get(String uri) throws Exception {
+		HttpRequest request = mock(HttpRequest.class);
+		when(request.getUri()).thenReturn(uri);
+		return controller().get(request);
+	}
+
+	private HttpResponse put(String body) throws Exception {
+		HttpRequest request = mock(HttpRequest.class);
+		when(request.getBody()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+		return controller().put(request, mock(HomekitClientConnection.class));
+	}
+
+	private CharacteristicsController controller() {
+		return new CharacteristicsController(registry, new SubscriptionManager(), 100, Executors.newCachedThreadPool());
+	}
+
+	private static JsonArray characteristics(HttpResponse response) {
+		ByteBuffer body = response.getBody();
+		byte[] bytes = new byte[body.remaining()];
+		body.get(bytes);
+		return Json.createReader(new ByteArrayInputStream(bytes)).readObject().getJsonArray("characteristics");
+	}
+
+	private static HomekitAccessory accessory(int aid, ColorfulLightbulb lightbulb) throws Exception {
+		return accessory(aid, lightbulb, withSettings());
+	}
+
+	private static HomekitAccessory accessory(int aid, ColorfulLightbulb lightbulb, MockSettings settings) throws Exception {
+		Service service = mock(Service.class);
+		when(service.getCharacteristics()).thenReturn(Arrays.asList(new HueCharacteristic(lightbulb)));
+		HomekitAccessory accessory = mock(HomekitAccessory.class, settings);
+		when(accessory.getId()).thenReturn(aid);
+		when(accessory.getLabel()).thenReturn("Accessory "+aid);
+		when(accessory.getServices()).thenReturn(Arrays.asList(service));
+		return accessory;
+	}
+}
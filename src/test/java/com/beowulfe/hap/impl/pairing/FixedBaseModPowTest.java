@@ -0,0 +1,32 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.*;
+
+public class FixedBaseModPowTest {
+
+	private static final FixedBaseModPow POWERS = new FixedBaseModPow(SrpHandler.G, SrpHandler.N_3072,
+			SrpHandler.N_3072.bitLength());
+
+	@Test
+	public void testMatchesModPow() {
+		Random random = new Random(7);
+		for (int i=0; i<20; i++) {
+			BigInteger exponent = new BigInteger(3072, random);
+			Assert.assertEquals(SrpHandler.G.modPow(exponent, SrpHandler.N_3072), POWERS.pow(exponent));
+		}
+	}
+
+	@Test
+	public void testEdgeExponents() {
+		BigInteger[] exponents = { BigInteger.ZERO, BigInteger.ONE, SrpHandler.N_3072.subtract(BigInteger.ONE),
+				BigInteger.ONE.shiftLeft(3072).subtract(BigInteger.ONE), BigInteger.ONE.shiftLeft(3072),
+				BigInteger.valueOf(-3) };
+		for (BigInteger exponent : exponents) {
+			Assert.assertEquals(exponent.toString(16), SrpHandler.G.modPow(exponent, SrpHandler.N_3072),
+					POWERS.pow(exponent));
+		}
+	}
+}
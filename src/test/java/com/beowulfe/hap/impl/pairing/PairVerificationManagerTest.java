@@ -0,0 +1,193 @@
+package com.beowulfe.hap.impl.pairing;
+
+import static org.mockito.Mockito.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+
+import org.bouncycastle.crypto.digests.SHA512Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.junit.*;
+
+import com.beowulfe.hap.HomekitAuthInfo;
+import com.beowulfe.hap.impl.HomekitRegistry;
+import com.beowulfe.hap.impl.crypto.ChachaDecoder;
+import com.beowulfe.hap.impl.crypto.ChachaEncoder;
+import com.beowulfe.hap.impl.crypto.EdsaSigner;
+import com.beowulfe.hap.impl.http.HttpRequest;
+import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
+
+import djb.Curve25519;
+
+public class PairVerificationManagerTest {
+
+	private static final String MAC = "AA:BB:CC:DD:EE:FF";
+	private static final byte[] CONTROLLER = "controller".getBytes(StandardCharsets.UTF_8);
+
+	private final SecureRandom random = new SecureRandom();
+	private HomekitAuthInfo authInfo;
+	private HomekitRegistry registry;
+	private PairingKeyCache keys;
+	private EdsaSigner controllerSigner;
+
+	@Before
+	public void setup() throws Exception {
+		byte[] accessoryKey = new byte[32];
+		byte[] controllerKey = new byte[32];
+		random.nextBytes(accessoryKey);
+		random.nextBytes(controllerKey);
+		controllerSigner = new EdsaSigner(controllerKey);
+		authInfo = mock(HomekitAuthInfo.class);
+		when(authInfo.getMac()).thenReturn(MAC);
+		when(authInfo.getPrivateKey()).thenReturn(accessoryKey);
+		when(authInfo.getUserPublicKey(MAC+new String(CONTROLLER, StandardCharsets.UTF_8)))
+				.thenReturn(controllerSigner.getPublicKey());
+		registry = new HomekitRegistry("Test");
+		keys = new PairingKeyCache(authInfo, 0);
+	}
+
+	@Test
+	public void testResumeDerivesKeysFromPreviousSession() throws Exception {
+		byte[] sharedSecret = verify();
+		byte[] sessionId = hkdf(sharedSecret, bytes("Pair-Verify-ResumeSessionID-Salt"), "Pair-Verify-ResumeSessionID-Info", 8);
+
+		byte[] publicKey = new byte[32];
+		random.nextBytes(publicKey);
+		HttpResponse response = resume(publicKey, sessionId, sharedSecret);
+		Assert.assertTrue("Session was not resumed", response instanceof UpgradeResponse);
+
+		DecodeResult d = TypeLengthValueUtils.decode(body(response));
+		byte[] newSessionId = d.getBytes(MessageType.SESSION_ID);
+		byte[] salt = ByteUtils.joinBytes(publicKey, newSessionId);
+		new ChachaDecoder(hkdf(sharedSecret, salt, "Pair-Resume-Response-Info", 32), bytes("PR-Msg02"))
+				.decodeCiphertext(d.getBytes(MessageType.ENCRYPTED_DATA), new byte[0]);
+		byte[] resumedSecret = hkdf(sharedSecret, salt, "Pair-Resume-Shared-Secret-Info", 32);
+		Assert.assertArrayEquals(hkdf(resumedSecret, bytes("Control-Salt"), "Control-Write-Encryption-Key", 32),
+				((UpgradeResponse) response).getReadKey().array());
+	}
+
+	@Test
+	public void testResumeIsSingleUse() throws Exception {
+		byte[] sharedSecret = verify();
+		byte[] sessionId = hkdf(sharedSecret, bytes("Pair-Verify-ResumeSessionID-Salt"), "Pair-Verify-ResumeSessionID-Info", 8);
+		byte[] publicKey = new byte[32];
+		random.nextBytes(publicKey);
+		Assert.assertTrue(resume(publicKey, sessionId, sharedSecret) instanceof UpgradeResponse);
+		assertFallsBackToVerify(resume(publicKey, sessionId, sharedSecret));
+	}
+
+	@Test
+	public void testResumeWithWrongSecretFallsBackToVerify() throws Exception {
+		byte[] sharedSecret = verify();
+		byte[] sessionId = hkdf(sharedSecret, bytes("Pair-Verify-ResumeSessionID-Salt"), "Pair-Verify-ResumeSessionID-Info", 8);
+		byte[] publicKey = new byte[32];
+		random.nextBytes(publicKey);
+		assertFallsBackToVerify(resume(publicKey, sessionId, new byte[32]));
+	}
+
+	@Test
+	public void testForgedResumeDoesNotEvictSession() throws Exception {
+		byte[] sharedSecret = verify();
+		byte[] sessionId = hkdf(sharedSecret, bytes("Pair-Verify-ResumeSessionID-Salt"), "Pair-Verify-ResumeSessionID-Info", 8);
+		byte[] publicKey = new byte[32];
+		random.nextBytes(publicKey);
+		assertFallsBackToVerify(resume(publicKey, sessionId, new byte[32]));
+		Assert.assertTrue(resume(publicKey, sessionId, sharedSecret) instanceof UpgradeResponse);
+	}
+
+	@Test
+	public void testResumeAfterPairingRemovedFallsBackToVerify() throws Exception {
+		byte[] sharedSecret = verify();
+		byte[] sessionId = hkdf(sharedSecret, bytes("Pair-Verify-ResumeSessionID-Salt"), "Pair-Verify-ResumeSessionID-Info", 8);
+		when(authInfo.getUserPublicKey(anyString())).thenReturn(null);
+		byte[] publicKey = new byte[32];
+		random.nextBytes(publicKey);
+		assertFallsBackToVerify(resume(publicKey, sessionId, sharedSecret));
+	}
+
+	@Test
+	public void testMissingEncryptedDataIsAuthenticationError() throws Exception {
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 3);
+		HttpResponse response = new PairVerificationManager(authInfo, registry, keys).handle(request(encoder.toByteArray()));
+		DecodeResult d = TypeLengthValueUtils.decode(body(response));
+		Assert.assertEquals(4, d.getByte(MessageType.STATE));
+		Assert.assertEquals(2, d.getByte(MessageType.ERROR));
+	}
+
+	private void assertFallsBackToVerify(HttpResponse response) throws Exception {
+		Assert.assertFalse(response instanceof UpgradeResponse);
+		Assert.assertNotNull(TypeLengthValueUtils.decode(body(response)).getBytes(MessageType.PUBLIC_KEY));
+	}
+
+	/**
+	 * Runs a full pair-verify as the controller.
+	 *
+	 * @return the shared secret.
+	 */
+	private byte[] verify() throws Exception {
+		PairVerificationManager manager = new PairVerificationManager(authInfo, registry, keys);
+		byte[] privateKey = new byte[32];
+		byte[] publicKey = new byte[32];
+		random.nextBytes(privateKey);
+		Curve25519.keygen(publicKey, null, privateKey);
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 1);
+		encoder.add(MessageType.PUBLIC_KEY, publicKey);
+		DecodeResult d = TypeLengthValueUtils.decode(body(manager.handle(request(encoder.toByteArray()))));
+
+		byte[] accessoryPublicKey = d.getBytes(MessageType.PUBLIC_KEY);
+		byte[] sharedSecret = new byte[32];
+		Curve25519.curve(sharedSecret, privateKey, accessoryPublicKey);
+		encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.USERNAME, CONTROLLER);
+		encoder.add(MessageType.SIGNATURE, controllerSigner.sign(ByteUtils.joinBytes(publicKey, CONTROLLER, accessoryPublicKey)));
+		byte[] encrypted = new ChachaEncoder(hkdf(sharedSecret, bytes("Pair-Verify-Encrypt-Salt"), "Pair-Verify-Encrypt-Info", 32),
+				bytes("PV-Msg03")).encodeCiphertext(encoder.toByteArray());
+		encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 3);
+		encoder.add(MessageType.ENCRYPTED_DATA, encrypted);
+		Assert.assertTrue(manager.handle(request(encoder.toByteArray())) instanceof UpgradeResponse);
+		return sharedSecret;
+	}
+
+	private HttpResponse resume(byte[] publicKey, byte[] sessionId, byte[] sharedSecret) throws Exception {
+		byte[] requestKey = hkdf(sharedSecret, ByteUtils.joinBytes(publicKey, sessionId), "Pair-Resume-Request-Info", 32);
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 1);
+		encoder.add(MessageType.METHOD, (short) 6);
+		encoder.add(MessageType.PUBLIC_KEY, publicKey);
+		encoder.add(MessageType.SESSION_ID, sessionId);
+		encoder.add(MessageType.ENCRYPTED_DATA, new ChachaEncoder(requestKey, bytes("PR-Msg01")).encodeCiphertext(new byte[0]));
+		return new PairVerificationManager(authInfo, registry, keys).handle(request(encoder.toByteArray()));
+	}
+
+	private static HttpRequest request(byte[] body) {
+		HttpRequest request = mock(HttpRequest.class);
+		when(request.getBody()).thenReturn(body);
+		return request;
+	}
+
+	private static byte[] body(HttpResponse response) {
+		ByteBuffer buffer = response.getBody();
+		byte[] body = new byte[buffer.remaining()];
+		buffer.get(body);
+		return body;
+	}
+
+	private static byte[] hkdf(byte[] secret, byte[] salt, String info, int length) {
+		HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA512Digest());
+		hkdf.init(new HKDFParameters(secret, salt, bytes(info)));
+		byte[] key = new byte[length];
+		hkdf.generateBytes(key, 0, length);
+		return key;
+	}
+
+	private static byte[] bytes(String label) {
+		return label.getBytes(StandardCharsets.UTF_8);
+	}
+}
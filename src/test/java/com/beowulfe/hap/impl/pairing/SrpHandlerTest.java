@@ -0,0 +1,76 @@
+package com.beowulfe.hap.impl.pairing;
+
+import static org.mockito.Mockito.*;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.junit.*;
+
+import com.beowulfe.hap.HomekitAuthInfo;
+import com.beowulfe.hap.impl.http.HttpResponse;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.DecodeResult;
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
+import com.nimbusds.srp6.*;
+
+public class SrpHandlerTest {
+
+	private static final String PIN = "031-45-154";
+
+	// The nimbus verifier generator and client disagree on the sign byte of a salt of a whole number of bytes
+	private final BigInteger salt = new BigInteger(126, new java.security.SecureRandom()).setBit(126);
+	private PairingKeyCache keys;
+
+	@Before
+	public void setup() {
+		keys = new PairingKeyCache(mock(HomekitAuthInfo.class), 0, 2);
+	}
+
+	@Test
+	public void testPrecomputedServerValuesAuthenticateClient() throws Exception {
+		for (int i=0; i<3; i++) {
+			Assert.assertNotNull(setup(PIN, PIN));
+		}
+	}
+
+	@Test(expected=SRP6Exception.class)
+	public void testVerifierFollowsChangedPin() throws Exception {
+		setup(PIN, PIN);
+		setup("111-22-333", PIN);
+	}
+
+	/**
+	 * Runs M1 to M4 of pair-setup with a client using clientPin.
+	 *
+	 * @return the accessory's session key.
+	 */
+	private byte[] setup(String accessoryPin, String clientPin) throws Exception {
+		SrpHandler handler = new SrpHandler(accessoryPin, salt, keys);
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 1);
+		DecodeResult d = TypeLengthValueUtils.decode(body(handler.handle(PairSetupRequest.of(encoder.toByteArray()))));
+
+		SRP6ClientSession client = new SRP6ClientSession();
+		client.setXRoutine(new XRoutineWithUserIdentity());
+		client.setClientEvidenceRoutine(new ClientEvidenceRoutineImpl());
+		client.setServerEvidenceRoutine(new ServerEvidenceRoutineImpl());
+		client.step1("Pair-Setup", clientPin);
+		SRP6ClientCredentials credentials = client.step2(new SRP6CryptoParams(SrpHandler.N_3072, SrpHandler.G, "SHA-512"),
+				d.getBigInt(MessageType.SALT), d.getBigInt(MessageType.PUBLIC_KEY));
+
+		encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 3);
+		encoder.add(MessageType.PUBLIC_KEY, credentials.A);
+		encoder.add(MessageType.PROOF, credentials.M1);
+		d = TypeLengthValueUtils.decode(body(handler.handle(PairSetupRequest.of(encoder.toByteArray()))));
+		client.step3(d.getBigInt(MessageType.PROOF));
+		return handler.getK();
+	}
+
+	private static byte[] body(HttpResponse response) {
+		ByteBuffer buffer = response.getBody();
+		byte[] body = new byte[buffer.remaining()];
+		buffer.get(body);
+		return body;
+	}
+}
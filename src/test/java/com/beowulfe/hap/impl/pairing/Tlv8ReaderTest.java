@@ -0,0 +1,58 @@
+package com.beowulfe.hap.impl.pairing;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.*;
+
+import com.beowulfe.hap.impl.pairing.TypeLengthValueUtils.Encoder;
+
+public class Tlv8ReaderTest {
+
+	private final Random random = new Random(5);
+
+	@Test
+	public void testFragmentedValueMatchesEncoder() throws Exception {
+		byte[] salt = new byte[16];
+		byte[] publicKey = new byte[384];
+		random.nextBytes(salt);
+		random.nextBytes(publicKey);
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(1) + Tlv8Writer.length(salt.length)
+				+ Tlv8Writer.length(publicKey.length));
+		writer.add(MessageType.STATE, 2);
+		writer.add(MessageType.SALT, salt);
+		writer.add(MessageType.PUBLIC_KEY, publicKey);
+		Encoder encoder = TypeLengthValueUtils.getEncoder();
+		encoder.add(MessageType.STATE, (short) 2);
+		encoder.add(MessageType.SALT, salt);
+		encoder.add(MessageType.PUBLIC_KEY, publicKey);
+		byte[] message = writer.toByteArray();
+		Assert.assertArrayEquals(encoder.toByteArray(), message);
+
+		Tlv8Reader reader = Tlv8Reader.of(message);
+		Assert.assertEquals(2, reader.getByte(MessageType.STATE));
+		Assert.assertArrayEquals(salt, reader.getBytes(MessageType.SALT));
+		Assert.assertEquals(new BigInteger(1, publicKey), reader.getBigInt(MessageType.PUBLIC_KEY));
+		Assert.assertFalse(reader.has(MessageType.PROOF));
+		Assert.assertNull(reader.getBytes(MessageType.PROOF));
+	}
+
+	@Test
+	public void testCopyRangeAcrossFragments() throws Exception {
+		byte[] value = new byte[600];
+		random.nextBytes(value);
+		Tlv8Writer writer = new Tlv8Writer(Tlv8Writer.length(value.length));
+		writer.add(MessageType.ENCRYPTED_DATA, value);
+		Tlv8Reader reader = Tlv8Reader.of(writer.toByteArray());
+		byte[] range = new byte[300];
+		reader.getBytes(MessageType.ENCRYPTED_DATA, 200, range, 0, range.length);
+		Assert.assertArrayEquals(Arrays.copyOfRange(value, 200, 500), range);
+	}
+
+	@Test(expected=IOException.class)
+	public void testTruncatedItemIsRejected() throws Exception {
+		Tlv8Reader.of(new byte[] { 0x06, 0x01, 0x01, 0x03, 0x20, 0x00 });
+	}
+}